@@ -0,0 +1,320 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  AccuracyReport.java
+ *
+ *  Measures what each faster way of rendering gains in speed and loses in accuracy.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Every view of a fixed corpus is rendered first the reference way, by the view's own kernel
+ * iterating every pixel of every tile as renderRegionPrimitive does, and then by each mode that
+ * applies to it. A mode's smooth iteration counts are compared with the reference's pixel by
+ * pixel. The table gives, per view and mode, the best time of REPEATS runs and the speedup over
+ * the reference, the share of pixels off by more than TOLERANCE iterations, the largest and mean
+ * differences, how many pixels changed between escaping and not, and where the largest difference
+ * is. For each mode with differences, a diff image shows the reference in grey with the differing
+ * pixels in red, brighter for larger differences.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class AccuracyReport {
+
+    /**
+     * A way of rendering a view that is meant to be faster than the reference.
+     */
+    static abstract class Mode {
+
+        final String name;
+
+        Mode(String name) {
+            this.name = name;
+        }
+
+        boolean appliesTo(Engine.Parameters p) {
+            return true;
+        }
+
+        /**
+         * Returns the smooth iteration count of every pixel of p.
+         */
+        abstract float[] render(Engine.Parameters p) throws InterruptedException;
+    }
+
+    private static final int TILE_SIZE = 64, REPEATS = 3;
+    private static final double TOLERANCE = 0.01;
+    private static volatile CountDownLatch renderEnded;
+
+    private AccuracyReport() {
+    }
+
+    /*
+     * Deep enough to stress precision and iteration limits, shallow enough to run in minutes.
+     */
+    private static List<Engine.Parameters> corpus() {
+        List<Engine.Parameters> views = new ArrayList<>();
+        EnumSet<Engine.Parameters.Option> none = EnumSet.noneOf(Engine.Parameters.Option.class);
+        Engine.Parameters.ColouringMethod regular = Engine.Parameters.ColouringMethod.REGULAR;
+
+        views.add(new Engine.Parameters(-2.5, 1, -1.3125, 1.3125, 640, 480, 500, regular,
+                MandelbrotKernel.INSTANCE, none));
+        views.add(new Engine.Parameters(-0.7530, -0.7390, 0.0935, 0.1040, 640, 480, 2000, regular,
+                MandelbrotKernel.INSTANCE, none));
+        views.add(new Engine.Parameters(0.2501, 0.2601, -0.00375, 0.00375, 640, 480, 2000, regular,
+                MandelbrotKernel.INSTANCE, none));
+        views.add(new Engine.Parameters(-1.7687782, -1.7687774, -0.0017365, -0.0017359, 640, 480, 4000,
+                regular, MandelbrotKernel.INSTANCE, none));
+        views.add(new Engine.Parameters(-1.6, 1.6, -1.2, 1.2, 640, 480, 1000, regular,
+                new JuliaKernel(-0.8, 0.156), none));
+        views.add(new Engine.Parameters(-1.8, -1.7, -0.08, -0.005, 640, 480, 1000, regular,
+                BurningShipKernel.INSTANCE, none));
+        views.add(new Engine.Parameters(-1.6, 1.6, -1.2, 1.2, 640, 480, 1000, regular,
+                new MultibrotKernel(3), none));
+        return views;
+    }
+
+    static List<Mode> modes() {
+        List<Mode> modes = new ArrayList<>();
+
+        modes.add(new Mode("Engine") {
+            @Override
+            float[] render(Engine.Parameters p) throws InterruptedException {
+                return renderWithEngine(p, EnumSet.noneOf(Engine.Parameters.Option.class));
+            }
+        });
+        modes.add(new Mode("Engine, automatic precision") {
+            @Override
+            float[] render(Engine.Parameters p) throws InterruptedException {
+                return renderWithEngine(p, EnumSet.of(Engine.Parameters.Option.AUTOMATIC_PRECISION));
+            }
+        });
+        modes.add(new Mode("Single precision kernel") {
+            @Override
+            boolean appliesTo(Engine.Parameters p) {
+                return p.kernel == MandelbrotKernel.INSTANCE;
+            }
+
+            @Override
+            float[] render(Engine.Parameters p) throws InterruptedException {
+                return iterate(p, MandelbrotFloatKernel.INSTANCE, false);
+            }
+        });
+        modes.add(new Mode("Distance estimate skipping") {
+            @Override
+            boolean appliesTo(Engine.Parameters p) {
+                return p.kernel.hasDistanceEstimate();
+            }
+
+            @Override
+            float[] render(Engine.Parameters p) throws InterruptedException {
+                return iterate(p, p.kernel, true);
+            }
+        });
+        modes.add(new Mode("Half resolution preview") {
+            @Override
+            float[] render(Engine.Parameters p) throws InterruptedException {
+                Engine.Parameters half = new Engine.Parameters(p.planeMinX, p.planeMaxX, p.planeMinY,
+                        p.planeMaxY, (p.imgWidth + 1) / 2, (p.imgHeight + 1) / 2, p.maxIters, p.colMethod,
+                        p.kernel, p.getOptions(), p.rotation);
+                float small[] = iterate(half, p.kernel, false), iterData[] = new float[p.imgWidth * p.imgHeight];
+                double pixel[] = new double[2];
+
+                // Stretched as the panel stretches an interactive frame: each pixel takes the
+                // nearest one of the small frame.
+                for (int j = 0; j < p.imgHeight; j++) {
+                    for (int i = 0; i < p.imgWidth; i++) {
+                        half.toPixel(p.originR + i * p.colStepR + j * p.rowStepR,
+                                p.originI + i * p.colStepI + j * p.rowStepI, pixel);
+                        int u = Math.max(0, Math.min(half.imgWidth - 1, (int) Math.floor(pixel[0] + 0.5))),
+                                v = Math.max(0, Math.min(half.imgHeight - 1, (int) Math.floor(pixel[1] + 0.5)));
+                        iterData[j * p.imgWidth + i] = small[v * half.imgWidth + u];
+                    }
+                }
+                return iterData;
+            }
+        });
+        return modes;
+    }
+
+    /*
+     * Iterates every tile of p with kernel k on every core, as renderRegionPrimitive would without
+     * reuse or mirroring.
+     */
+    static float[] iterate(final Engine.Parameters p, final Kernel k, final boolean estimated)
+            throws InterruptedException {
+        final int cols = (p.imgWidth + TILE_SIZE - 1) / TILE_SIZE,
+                tileCount = cols * ((p.imgHeight + TILE_SIZE - 1) / TILE_SIZE),
+                threads = Runtime.getRuntime().availableProcessors();
+        final float iterData[] = new float[p.imgWidth * p.imgHeight],
+                distData[] = estimated ? new float[iterData.length] : null;
+        final Engine.Statistics stats = new Engine.Statistics(p.maxIters, 0, 0, 0, 0);
+        final AtomicInteger next = new AtomicInteger();
+
+        WorkerPool.start(threads, WorkerPool.Priority.INTERACTIVE, new Runnable() {
+            @Override
+            public void run() {
+                for (int t; (t = next.getAndIncrement()) < tileCount;) {
+                    int x = t % cols * TILE_SIZE, y = t / cols * TILE_SIZE;
+                    Rectangle r = new Rectangle(x, y, Math.min(TILE_SIZE, p.imgWidth - x),
+                            Math.min(TILE_SIZE, p.imgHeight - y));
+                    if (estimated) {
+                        k.iterateRegionEstimated(p, r, iterData, distData, stats);
+                    } else {
+                        k.iterateRegion(p, r, iterData, stats);
+                    }
+                }
+            }
+        }).await();
+        return iterData;
+    }
+
+    private static float[] renderWithEngine(Engine.Parameters p, EnumSet<Engine.Parameters.Option> options)
+            throws InterruptedException {
+        // Nothing of an earlier render may be reused.
+        Engine.cleanup();
+        Engine.initialize(listener);
+        Engine.setParameters(new Engine.Parameters(p.planeMinX, p.planeMaxX, p.planeMinY, p.planeMaxY,
+                p.imgWidth, p.imgHeight, p.maxIters, p.colMethod, p.kernel, options, p.rotation));
+        renderEnded = new CountDownLatch(1);
+        Engine.startRendering();
+        renderEnded.await();
+        return Engine.getIterationData().clone();
+    }
+
+    private static final Engine.Listener listener = new Engine.Listener() {
+        @Override
+        public void renderingBegun() {
+        }
+
+        @Override
+        public void regionRendered(Rectangle region) {
+        }
+
+        @Override
+        public void renderingEnded() {
+            renderEnded.countDown();
+        }
+
+        @Override
+        public void errorOccurred() {
+        }
+
+        @Override
+        public void statsGenerated() {
+        }
+    };
+
+    /*
+     * Returns the best time of REPEATS renders in milliseconds, and the last render's data in out.
+     */
+    private static double time(Mode m, Engine.Parameters p, float[][] out) throws InterruptedException {
+        double best = Double.POSITIVE_INFINITY;
+
+        for (int n = 0; n < REPEATS; n++) {
+            long start = System.nanoTime();
+            out[0] = m.render(p);
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        return best;
+    }
+
+    /**
+     * Runs the report, writing diff images into the directory given, or into "report".
+     */
+    public static void main(String args[]) {
+        File dir = new File(args.length > 0 ? args[0] : "report");
+        List<Engine.Parameters> views = corpus();
+        Mode reference = new Mode("Reference") {
+            @Override
+            float[] render(Engine.Parameters p) throws InterruptedException {
+                return iterate(p, p.kernel, false);
+            }
+        };
+        float out[][] = new float[1][];
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            System.err.println("Cannot create " + dir + ".");
+            System.exit(1);
+        }
+        Engine.initialize(listener);
+        System.out.printf("%-4s %-24s %-30s %9s %8s %10s %9s %9s %7s  %s%n", "View", "Kernel", "Mode",
+                "Time (ms)", "Speedup", "Mismatch", "Max err", "Mean err", "Flips", "Worst at");
+        try {
+            for (int v = 0; v < views.size(); v++) {
+                Engine.Parameters p = views.get(v);
+                double refTime = time(reference, p, out);
+                float ref[] = out[0];
+
+                System.out.printf("%-4d %-24s %-30s %9.1f %8s %10s %9s %9s %7s%n", v, p.kernel.getName(),
+                        reference.name, refTime, "1.00", "-", "-", "-", "-");
+                for (Mode m : modes()) {
+                    if (!m.appliesTo(p)) {
+                        continue;
+                    }
+                    double t = time(m, p, out);
+                    compare(v, p, m, refTime, t, ref, out[0], dir);
+                }
+            }
+        } catch (InterruptedException | IOException ex) {
+            Logger.getLogger(AccuracyReport.class.getName()).log(Level.SEVERE, null, ex);
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    private static void compare(int v, Engine.Parameters p, Mode m, double refTime, double time,
+            float[] ref, float[] data, File dir) throws IOException {
+        int mismatches = 0, flips = 0, worst = 0;
+        double maxError = 0, totalError = 0;
+        BufferedImage diff = new BufferedImage(p.imgWidth, p.imgHeight, BufferedImage.TYPE_INT_RGB);
+
+        for (int k = 0; k < ref.length; k++) {
+            double error = Math.abs((double) data[k] - ref[k]);
+            boolean refInside = ref[k] >= p.maxIters, inside = data[k] >= p.maxIters;
+            int grey = refInside ? 0 : 40 + (int) (80 * Math.min(1, ref[k] / p.maxIters * 4)), rgb;
+
+            if (refInside != inside) {
+                flips++;
+                error = Math.max(error, 1);
+            }
+            if (error > TOLERANCE) {
+                int red = 128 + (int) Math.min(127, 32 * Math.log1p(error));
+                rgb = red << 16;
+                mismatches++;
+            } else {
+                rgb = grey << 16 | grey << 8 | grey;
+            }
+            diff.getRaster().getDataBuffer().setElem(k, rgb);
+            if (error > maxError) {
+                maxError = error;
+                worst = k;
+            }
+            totalError += error;
+        }
+        System.out.printf("%-4d %-24s %-30s %9.1f %8.2f %9.3f%% %9.3f %9.4f %7d  %s%n", v,
+                p.kernel.getName(), m.name, time, refTime / time, 100.0 * mismatches / ref.length, maxError,
+                totalError / ref.length, flips, mismatches == 0 ? "-" : "(" + worst % p.imgWidth + ", "
+                + worst / p.imgWidth + ")");
+        if (mismatches > 0) {
+            PngWriter.write(diff, new File(dir, String.format("view%d-%s.png", v,
+                    m.name.toLowerCase().replaceAll("[^a-z0-9]+", "-"))));
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  BatchRenderer.java
+ *
+ *  Renders a list of views to PNG files, iterating, colouring and encoding different frames at once.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A job file has one view per line:
+ *
+ * <pre>
+ * output.png minX maxX minY maxY width height maxIters [kernel-spec] [OPTION ...]
+ * </pre>
+ *
+ * where the kernel spec is as Kernel.forSpec takes it (mandelbrot by default), and the options are
+ * those of SUPPORTED_OPTIONS; a job with any other is rejected. Blank lines and lines starting with
+ * # are skipped, and relative output paths are taken from the job file's directory.
+ *
+ * Frames pass through three stages joined by queues of QUEUE_DEPTH frames: iteration, colouring
+ * and PNG encoding. All three run as background work in the WorkerPool, a worker per core; a stage
+ * hands each frame to the pool as workers that take tiles or bands until there are none left, so
+ * colouring one frame fills the gaps left by the slowest tiles of the next, and an interactive
+ * render in the same process takes the cores over between tiles. The queues hold the stages at
+ * most QUEUE_DEPTH frames apart, which also bounds the memory in use. Tiles are cut and ordered by
+ * probed cost as Engine's are.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class BatchRenderer {
+
+    public static class Job {
+
+        final File output;
+        final Engine.Parameters params;
+
+        public Job(File output, Engine.Parameters params) {
+            this.output = output;
+            this.params = params;
+        }
+    }
+
+    private static final class Frame {
+
+        final Job job;
+        final BufferedImage image;
+        final int pixels[];
+        final float iterData[], distData[];
+        final Kernel kernel;
+        final Engine.Statistics stats;
+
+        Frame(Job job) {
+            Engine.Parameters p = job.params;
+
+            this.job = job;
+            kernel = Engine.planKernel(p);
+            image = new BufferedImage(p.imgWidth, p.imgHeight, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            iterData = new float[pixels.length];
+            distData = p.hasOption(Engine.Parameters.Option.DISTANCE_ESTIMATION) && kernel.hasDistanceEstimate()
+                    ? new float[pixels.length] : null;
+            stats = new Engine.Statistics(p.maxIters, 0, 0, 0, 0);
+        }
+
+        // The end of the batch.
+        Frame() {
+            job = null;
+            image = null;
+            pixels = null;
+            iterData = distData = null;
+            kernel = null;
+            stats = null;
+        }
+    }
+
+    private static final int BAND_HEIGHT = 16, QUEUE_DEPTH = 2;
+    private static final EnumSet<Engine.Parameters.Option> SUPPORTED_OPTIONS
+            = EnumSet.of(Engine.Parameters.Option.DISTANCE_ESTIMATION, Engine.Parameters.Option.AUTOMATIC_PRECISION);
+    private static final Frame END = new Frame();
+    private final List<Job> jobs;
+    private final int threads;
+    private final ArrayBlockingQueue<Frame> colourQueue, encodeQueue;
+    private volatile long iterationNanos, colouringNanos, encodingNanos, pixelCount;
+    private volatile int failures;
+
+    public BatchRenderer(List<Job> jobs) {
+        this.jobs = jobs;
+        threads = Runtime.getRuntime().availableProcessors();
+        colourQueue = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+        encodeQueue = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+    }
+
+    /**
+     * Reads a job file; see the class description for its format.
+     */
+    public static List<Job> readJobs(File f) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        File base = f.getAbsoluteFile().getParentFile();
+        int lineNumber = 0;
+
+        try (BufferedReader r = new BufferedReader(new FileReader(f))) {
+            for (String line; (line = r.readLine()) != null;) {
+                String[] fields = line.trim().split("\\s+");
+                Kernel kernel = MandelbrotKernel.INSTANCE;
+                EnumSet<Engine.Parameters.Option> options = EnumSet.noneOf(Engine.Parameters.Option.class);
+                File output;
+
+                lineNumber++;
+                if (fields[0].isEmpty() || fields[0].startsWith("#")) {
+                    continue;
+                }
+                try {
+                    if (fields.length < 8) {
+                        throw new IllegalArgumentException("Expected at least 8 fields.");
+                    }
+                    for (int n = 8; n < fields.length; n++) {
+                        if (n == 8 && Character.isLowerCase(fields[n].charAt(0))) {
+                            kernel = Kernel.forSpec(fields[n]);
+                        } else {
+                            options.add(Engine.Parameters.Option.valueOf(fields[n]));
+                        }
+                    }
+                    for (Engine.Parameters.Option o : options) {
+                        if (!SUPPORTED_OPTIONS.contains(o)) {
+                            throw new IllegalArgumentException("Batches do not support " + o + ".");
+                        }
+                    }
+                    output = new File(fields[0]);
+                    if (!output.isAbsolute()) {
+                        output = new File(base, fields[0]);
+                    }
+                    jobs.add(new Job(output, new Engine.Parameters(Double.parseDouble(fields[1]),
+                            Double.parseDouble(fields[2]), Double.parseDouble(fields[3]),
+                            Double.parseDouble(fields[4]), Integer.parseInt(fields[5]),
+                            Integer.parseInt(fields[6]), Integer.parseInt(fields[7]),
+                            Engine.Parameters.ColouringMethod.REGULAR, kernel, options)));
+                } catch (IllegalArgumentException ex) {
+                    throw new IOException(f.getName() + ", line " + lineNumber + " (" + line.trim() + "): "
+                            + ex.getMessage(), ex);
+                }
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Renders every job, printing a line per frame and a summary at the end.
+     */
+    public void run() throws InterruptedException {
+        Thread colourer, encoder;
+        long start = System.nanoTime(), wall;
+
+        colourer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                stage(colourQueue, encodeQueue, true);
+            }
+        }, "BatchRenderer colouring");
+        encoder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                stage(encodeQueue, null, false);
+            }
+        }, "BatchRenderer encoding");
+        colourer.start();
+        encoder.start();
+        for (Job j : jobs) {
+            long t = System.nanoTime();
+            Frame f = new Frame(j);
+
+            iterate(f);
+            iterationNanos += System.nanoTime() - t;
+            colourQueue.put(f);
+        }
+        colourQueue.put(END);
+        colourer.join();
+        encoder.join();
+        wall = System.nanoTime() - start;
+
+        System.out.printf("%d frames, %.1f Mpixels in %.2f s: %.2f frames/s, %.2f Mpixels/s.%n",
+                jobs.size(), pixelCount / 1e6, wall / 1e9, jobs.size() / (wall / 1e9),
+                pixelCount / 1e6 / (wall / 1e9));
+        System.out.printf("Stage time: iteration %.2f s, colouring %.2f s, encoding %.2f s; "
+                + "the batch took %.0f%% longer than iteration alone.%n", iterationNanos / 1e9,
+                colouringNanos / 1e9, encodingNanos / 1e9, 100.0 * (wall - iterationNanos) / iterationNanos);
+        if (failures > 0) {
+            System.out.printf("%d frames could not be written.%n", failures);
+        }
+    }
+
+    /*
+     * Takes frames from in until END, colours or encodes each and passes it to out.
+     */
+    private void stage(ArrayBlockingQueue<Frame> in, ArrayBlockingQueue<Frame> out, boolean colouring) {
+        try {
+            for (Frame f; (f = in.take()) != END;) {
+                long t = System.nanoTime();
+
+                if (colouring) {
+                    colour(f);
+                    colouringNanos += System.nanoTime() - t;
+                } else {
+                    encode(f);
+                    encodingNanos += System.nanoTime() - t;
+                }
+                if (out != null) {
+                    out.put(f);
+                }
+            }
+            if (out != null) {
+                out.put(END);
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(BatchRenderer.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private void iterate(final Frame f) throws InterruptedException {
+        final Engine.Parameters p = f.job.params;
+        final List<Rectangle> tiles = Engine.createTiles(p, 0, 0,
+                Engine.probeCosts(p, f.kernel, null, threads, WorkerPool.Priority.BACKGROUND), threads);
+        final AtomicInteger next = new AtomicInteger();
+
+        inParallel(new Runnable() {
+            @Override
+            public void run() {
+                for (int t; (t = next.getAndIncrement()) < tiles.size();) {
+                    Rectangle r = tiles.get(t);
+                    if (f.distData != null) {
+                        f.kernel.iterateRegionEstimated(p, r, f.iterData, f.distData, f.stats);
+                    } else {
+                        f.kernel.iterateRegion(p, r, f.iterData, f.stats);
+                    }
+                    WorkerPool.checkpoint();
+                }
+            }
+        });
+    }
+
+    private void colour(final Frame f) throws InterruptedException {
+        final Engine.Parameters p = f.job.params;
+        final int bands = (p.imgHeight + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        final AtomicInteger next = new AtomicInteger();
+
+        inParallel(new Runnable() {
+            @Override
+            public void run() {
+                for (int b; (b = next.getAndIncrement()) < bands;) {
+                    int end = Math.min(p.imgHeight, (b + 1) * BAND_HEIGHT) * p.imgWidth;
+                    for (int k = b * BAND_HEIGHT * p.imgWidth; k < end; k++) {
+                        f.pixels[k] = Engine.pixelColour(p, f.iterData[k],
+                                f.distData == null ? Float.POSITIVE_INFINITY : f.distData[k]);
+                    }
+                    WorkerPool.checkpoint();
+                }
+            }
+        });
+    }
+
+    private void encode(Frame f) {
+        Engine.Statistics s = f.stats;
+
+        try {
+            PngWriter.write(f.image, f.job.output);
+        } catch (IOException ex) {
+            Logger.getLogger(BatchRenderer.class.getName()).log(Level.SEVERE, null, ex);
+            failures++;
+            return;
+        }
+        pixelCount += f.pixels.length;
+        System.out.printf("%s: %dx%d, %d iterations max, mean %.1f (%s)%n", f.job.output.getName(),
+                f.image.getWidth(), f.image.getHeight(), s.maxIterations, s.meanIterations / f.pixels.length,
+                f.kernel.getName());
+    }
+
+    /*
+     * Runs work on a background worker per core and waits for all of them to finish.
+     */
+    private void inParallel(Runnable work) throws InterruptedException {
+        WorkerPool.start(threads, WorkerPool.Priority.BACKGROUND, work).await();
+    }
+
+    /**
+     * @param args the job file
+     */
+    public static void main(String args[]) {
+        if (args.length != 1) {
+            System.err.println("Usage: BatchRenderer <job file>");
+            System.exit(2);
+        }
+        try {
+            new BatchRenderer(readJobs(new File(args[0]))).run();
+        } catch (IOException | InterruptedException ex) {
+            Logger.getLogger(BatchRenderer.class.getName()).log(Level.SEVERE, null, ex);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  BurningShipKernel.java
+ *
+ *  The escape-time loop for z -> (|Re z| + i|Im z|)^2 + c.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.Rectangle;
+
+/**
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class BurningShipKernel extends Kernel {
+
+    public static final BurningShipKernel INSTANCE = new BurningShipKernel();
+
+    private BurningShipKernel() {
+        super("Burning Ship");
+    }
+
+    @Override
+    public String getSpec() {
+        return "burning-ship";
+    }
+
+    @Override
+    void iterateRegion(Engine.Parameters p, Rectangle region, float[] iterData, Engine.Statistics stats) {
+        int k, maxIters = p.maxIters, convCount = 0, minIterationCount = maxIters, maxIterationCount = 1;
+        long totalIterationCount = 0;
+        double zR, cR, aR, zI, cI, aI, colR, colI, rowR, rowI, temp;
+
+        colR = p.colStepR;
+        colI = p.colStepI;
+        rowR = p.rowStepR;
+        rowI = p.rowStepI;
+        aR = p.originR;
+        aI = p.originI;
+        for (int i = 0; i < region.width; i++) {
+            for (int j = 0; j < region.height; j++) {
+                zR = cR = aR + colR * (region.x + i) + rowR * (region.y + j);
+                zI = cI = aI + colI * (region.x + i) + rowI * (region.y + j);
+                k = 0;
+
+                while (k < maxIters) {
+                    if (zR * zR + zI * zI > BAILOUT) {
+                        break;
+                    }
+
+                    temp = zR;
+                    zR = zR * zR - zI * zI + cR;
+                    zI = Math.abs(2 * temp * zI) + cI;
+                    k++;
+                }
+                if (k < maxIters) {
+                    convCount++;
+                }
+                if (k > maxIterationCount) {
+                    maxIterationCount = k;
+                }
+                if (k < minIterationCount) {
+                    minIterationCount = k;
+                }
+                totalIterationCount += k;
+                iterData[(region.y + j) * p.imgWidth + region.x + i] = smoothIterations(k, maxIters, zR, zI);
+            }
+        }
+        stats.add(convCount, 0, minIterationCount, maxIterationCount, totalIterationCount);
+    }
+
+    @Override
+    float iteratePoint(double cR, double cI, int maxIters, double[] dist) {
+        int k = 0;
+        double zR = cR, zI = cI, temp;
+
+        while (k < maxIters) {
+            if (zR * zR + zI * zI > BAILOUT) {
+                break;
+            }
+
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = Math.abs(2 * temp * zI) + cI;
+            k++;
+        }
+        if (dist != null) {
+            dist[0] = Double.POSITIVE_INFINITY;
+        }
+        return smoothIterations(k, maxIters, zR, zI);
+    }
+
+    @Override
+    float resumePoint(double cR, double cI, double[] z, int k, int maxIters) {
+        double zR = z[0], zI = z[1], temp;
+
+        while (k < maxIters) {
+            if (zR * zR + zI * zI > BAILOUT) {
+                break;
+            }
+
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = Math.abs(2 * temp * zI) + cI;
+            k++;
+        }
+        z[0] = zR;
+        z[1] = zI;
+        return smoothIterations(k, maxIters, zR, zI);
+    }
+
+    @Override
+    boolean hasOrbits() {
+        return true;
+    }
+
+    @Override
+    int traceOrbit(double cR, double cI, int maxIters, double[] orbit) {
+        int k = 0;
+        double zR = cR, zI = cI, temp;
+
+        while (k < maxIters) {
+            if (zR * zR + zI * zI > BAILOUT) {
+                break;
+            }
+
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = Math.abs(2 * temp * zI) + cI;
+            orbit[2 * k] = zR;
+            orbit[2 * k + 1] = zI;
+            k++;
+        }
+        return k;
+    }
+}
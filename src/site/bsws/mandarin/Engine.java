@@ -15,7 +15,18 @@ import java.awt.Color;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,6 +41,10 @@ public class Engine {
 
         public void regionRendered(Rectangle region);
 
+        /**
+         * The last call of every render, made after statsGenerated, or on its own if the render was
+         * cancelled.
+         */
         public void renderingEnded();
 
         public void errorOccurred();
@@ -37,13 +52,27 @@ public class Engine {
         public void statsGenerated();
     }
 
+    /**
+     * Supplies the cost of a probe whose value a render already has, or -1 if it has none.
+     */
+    static interface KnownCosts {
+
+        long cost(int i, int j, double cR, double cI);
+    }
+
     public static class Statistics {
-        public int minIterations, maxIterations, convergentPoints;
-        public double meanIterations, renderingTime;
+        public int minIterations, maxIterations, convergentPoints, supersampledPoints, estimatedPoints;
+        // idleTime totals the milliseconds workers spent waiting for the last one of a pass.
+        public double meanIterations, renderingTime, idleTime;
+        // With AUTOMATIC_ITERATIONS, iterationLimit is the limit the probe chose, and
+        // unresolvedShare the estimated share of points that escape only beyond it; otherwise 0.
+        public int iterationLimit;
+        public double unresolvedShare;
+        public String kernelName;
 
         private Statistics() {
-            minIterations = maxIterations = convergentPoints = 0;
-            meanIterations = renderingTime = 0;
+            minIterations = maxIterations = convergentPoints = supersampledPoints = estimatedPoints = 0;
+            meanIterations = renderingTime = idleTime = 0;
         }
 
         public Statistics(int minIter, double meanIter, int maxIter, int conPts, double renTime) {
@@ -54,6 +83,17 @@ public class Engine {
             renderingTime = renTime;
         }
 
+        synchronized void add(int conPts, int estPts, int minIter, int maxIter, long totalIters) {
+            convergentPoints += conPts;
+            estimatedPoints += estPts;
+            if (maxIterations < maxIter) {
+                maxIterations = maxIter;
+            }
+            if (minIterations > minIter) {
+                minIterations = minIter;
+            }
+            meanIterations += totalIters;
+        }
     }
 
     public static class Parameters {
@@ -73,18 +113,73 @@ public class Engine {
                 return n;
             }
         }
-        private final double planeMinX, planeMaxX, planeMinY, planeMaxY, planeXUnit, planeYUnit;
-        private final int imgWidth, imgHeight, maxIters;
-        private final ColouringMethod colMethod;
+
+        public static enum Option {
+
+            /**
+             * Supersamples the pixels whose iteration values differ sharply from their neighbours'.
+             */
+            ANTI_ALIASING,
+            /**
+             * Shades the boundary from the exterior distance estimate and interpolates the pixels
+             * of discs that the estimate shows to lie outside the set.
+             */
+            DISTANCE_ESTIMATION,
+            /**
+             * Lets the engine substitute a more precise variant of the kernel when the pixel
+             * spacing is too fine for the requested one.
+             */
+            AUTOMATIC_PRECISION,
+            /**
+             * Plots how often the orbits of escaping points visit each pixel (the Buddhabrot)
+             * instead of escape times, for kernels that can trace orbits.
+             */
+            ORBIT_DENSITY,
+            /**
+             * With ORBIT_DENSITY, plots the orbits that stay bounded instead (the anti-Buddhabrot).
+             */
+            BOUNDED_ORBITS,
+            /**
+             * Lowers the iteration limit to the smallest that a sparse probe of the view finds to
+             * leave no more than the unresolved target of its points wrongly inside the set. The
+             * given limit is the most it may be.
+             */
+            AUTOMATIC_ITERATIONS
+        }
+        final double planeMinX, planeMaxX, planeMinY, planeMaxY, planeXUnit, planeYUnit, rotation;
+        // Pixel (i, j) samples origin + i * colStep + j * rowStep: the plane window turned by
+        // rotation radians anticlockwise about its centre.
+        final double originR, originI, colStepR, colStepI, rowStepR, rowStepI;
+        final int imgWidth, imgHeight, maxIters;
+        final ColouringMethod colMethod;
+        final Kernel kernel;
+        private final EnumSet<Option> options;
 
         private Parameters() {
-            planeMinX = planeMaxX = planeMinY = planeMaxY = planeXUnit = planeYUnit = 0;
+            planeMinX = planeMaxX = planeMinY = planeMaxY = planeXUnit = planeYUnit = rotation = 0;
+            originR = originI = colStepR = colStepI = rowStepR = rowStepI = 0;
             imgWidth = imgHeight = maxIters = 0;
             colMethod = null;
+            kernel = null;
+            options = EnumSet.noneOf(Option.class);
         }
 
         public Parameters(double plMinX, double plMaxX, double plMinY, double plMaxY, int imgWidth,
                 int imgHeight, int maxIter, ColouringMethod colMeth) {
+            this(plMinX, plMaxX, plMinY, plMaxY, imgWidth, imgHeight, maxIter, colMeth,
+                    MandelbrotKernel.INSTANCE, EnumSet.noneOf(Option.class));
+        }
+
+        public Parameters(double plMinX, double plMaxX, double plMinY, double plMaxY, int imgWidth,
+                int imgHeight, int maxIter, ColouringMethod colMeth, Kernel kernel, EnumSet<Option> opts) {
+            this(plMinX, plMaxX, plMinY, plMaxY, imgWidth, imgHeight, maxIter, colMeth, kernel, opts, 0);
+        }
+
+        public Parameters(double plMinX, double plMaxX, double plMinY, double plMaxY, int imgWidth,
+                int imgHeight, int maxIter, ColouringMethod colMeth, Kernel kernel, EnumSet<Option> opts,
+                double rotation) {
+            double cos, sin, dR, dI;
+
             planeMinX = plMinX;
             planeMaxX = plMaxX;
             planeMinY = plMinY;
@@ -95,22 +190,164 @@ public class Engine {
             this.imgHeight = imgHeight;
             this.maxIters = maxIter;
             this.colMethod = colMeth;
+            this.kernel = kernel;
+            this.options = EnumSet.copyOf(opts);
+            this.rotation = rotation;
+
+            // Quarter turns get exact coefficients, so that their pixels land exactly on the
+            // unrotated grid.
+            if (Math.abs(Math.IEEEremainder(rotation, Math.PI / 2)) < 1e-12) {
+                int quarter = (int) Math.round(rotation / (Math.PI / 2)) & 3;
+                cos = quarter == 0 ? 1 : quarter == 2 ? -1 : 0;
+                sin = quarter == 1 ? 1 : quarter == 3 ? -1 : 0;
+            } else {
+                cos = Math.cos(rotation);
+                sin = Math.sin(rotation);
+            }
+            // Written as corner + (R - 1)(corner - centre) so that no rotation leaves the corner
+            // exact.
+            dR = plMinX - (plMinX + plMaxX) / 2;
+            dI = plMaxY - (plMinY + plMaxY) / 2;
+            originR = plMinX + ((cos - 1) * dR - sin * dI);
+            originI = plMaxY + (sin * dR + (cos - 1) * dI);
+            colStepR = planeXUnit * cos;
+            colStepI = planeXUnit * sin;
+            rowStepR = planeYUnit * sin;
+            rowStepI = -planeYUnit * cos;
+        }
+
+        public boolean hasOption(Option o) {
+            return options.contains(o);
+        }
+
+        EnumSet<Option> getOptions() {
+            return EnumSet.copyOf(options);
+        }
+
+        /**
+         * Stores in pixel the unrounded column and row whose sample point is (cR, cI).
+         */
+        void toPixel(double cR, double cI, double[] pixel) {
+            double det = colStepR * rowStepI - colStepI * rowStepR, dR = cR - originR, dI = cI - originI;
+
+            pixel[0] = (dR * rowStepI - dI * rowStepR) / det;
+            pixel[1] = (colStepR * dI - colStepI * dR) / det;
         }
     }
 
+    private static enum Pass {
+
+        ITERATION,
+        RESTORE,
+        // Colours and counts pixels whose values are already in place.
+        COLOURING,
+        ANTI_ALIASING
+    }
+
+    /*
+     * An image with its per-pixel data, and once finished, what it was rendered with.
+     */
+    private static final class RenderTarget {
+
+        final BufferedImage image;
+        final int buffer[];
+        final float iterData[];
+        float distBuffer[], distData[];
+        int reuseMap[];
+        // What the frame was asked for, which differs from params if its iteration limit was chosen.
+        Parameters requested, params;
+        // Set if a region was rendered again at a higher limit than the rest.
+        boolean refined;
+        Kernel kernel;
+        Statistics stats;
+
+        RenderTarget(int width, int height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            buffer = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            iterData = new float[buffer.length];
+        }
+    }
+    // A pixel is supersampled on an AA_GRID x AA_GRID jittered grid when its iteration value differs
+    // from a neighbour's by more than AA_THRESHOLD of the iteration limit (or by one iteration).
+    private static final int AA_GRID = 3;
+    private static final double AA_THRESHOLD = 1 / 128.0;
+    // A kernel is precise enough when a pixel spans at least PRECISION_MARGIN units of rounding
+    // error at the magnitude of the viewport's coordinates.
+    private static final double PRECISION_MARGIN = 1 << 12;
+    // A frame reuses the previous one's data only if its pixels land within REUSE_TOLERANCE pixels
+    // of the previous grid.
+    private static final double REUSE_TOLERANCE = 1e-6;
+    // Orbit density renders trace ORBIT_SAMPLES_PER_PIXEL orbits per pixel in batches of
+    // ORBIT_BATCH, show progress every PROGRESS_INTERVAL milliseconds and, if a checkpoint file is
+    // set, save to it every CHECKPOINT_INTERVAL milliseconds.
+    private static final int ORBIT_SAMPLES_PER_PIXEL = 16, ORBIT_BATCH = 1 << 12;
+    private static final long PROGRESS_INTERVAL = 250, CHECKPOINT_INTERVAL = 10000;
+    // Frames are cut into TILE_SIZE squares, costed from one probe per PROBE_STEP square, and the
+    // costliest tiles are halved until none holds more than 1 / (coreCount * SPLIT_FACTOR) of the
+    // total or they reach MIN_TILE_SIZE. Each probe adds PIXEL_COST iterations for the per-pixel
+    // work besides iterating.
+    private static final int TILE_SIZE = 64, PROBE_STEP = 8, MIN_TILE_SIZE = 16, SPLIT_FACTOR = 8,
+            PIXEL_COST = 4;
+    // Targets of sizes other than the current one are kept, least recently used first to go, until
+    // there are POOL_SIZE; resizing back and forth then allocates nothing.
+    private static final int POOL_SIZE = 4;
+    // Marks a row in the mirror plan that another row is copied from.
+    private static final int MIRROR_SOURCE = -2;
+    // At most PREFETCH_LIMIT speculatively rendered frames are kept, newest first.
+    private static final int PREFETCH_LIMIT = 6;
+    // Automatic iteration limits are chosen from about LIMIT_PROBES points, iterated first to
+    // LIMIT_PROBE_START and then to twice as many at a time, until some have escaped and no more
+    // than half the unresolved target of them escaped in the last doubling. Limits are at least
+    // MIN_LIMIT and rounded up to a quarter octave, so that nearby views tend to share one and
+    // reuse each other's pixels.
+    private static final int LIMIT_PROBES = 4096, LIMIT_PROBE_START = 64, MIN_LIMIT = 16;
+    private static volatile double unresolvedTarget = 0.002;
+    // Renders use coreCount workers: threadCount if it is set, or else one per core.
     private static int coreCount, threadCount, buffer[];
+    private static float iterData[], distData[];
     private static BufferedImage image;
     private static Listener handler;
-    private static Parameters params;
+    private static Parameters requested, params;
+    private static Kernel kernel;
     private static Statistics stats;
-    private static ArrayBlockingQueue<Rectangle> regionQueue;
+    private static List<Rectangle> regions;
+    private static Session session;
+    // The pool, the prefetched frames, and which targets are being rendered into and shown change
+    // only under the lock of targets. The front one is also read without it, for display.
+    private static final List<RenderTarget> targets = new ArrayList<>();
+    private static final List<RenderTarget> prefetched = new ArrayList<>();
+    private static RenderTarget target, reuse[];
+    private static volatile RenderTarget front;
+    private static int mirror[];
+    private static final TileStream tiles = new TileStream();
+    private static volatile boolean publishing;
+    private static WorkerPool.Priority workerPriority = WorkerPool.Priority.INTERACTIVE;
+    private static OrbitDensity orbits;
+    private static File orbitCheckpoint;
+    private static volatile TileCache tileCache;
+    // The cache the current render reads from and writes to, and which of its TILE_SIZE squares it
+    // found there. The squares, and the tiles cut from them, start at pixel (squareX, squareY),
+    // which lines them up with the cache's grid on the plane; without a cache it is (0, 0).
+    private static TileCache frameCache;
+    private static boolean cachedTiles[];
+    private static int squareX, squareY, squareCols;
+    private static volatile boolean cancelled;
 
     private Engine() {
     }
 
     public static void initialize(Listener h) {
         Engine.handler = h;
-        Engine.coreCount = Runtime.getRuntime().availableProcessors();
+        Engine.coreCount = threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Sets the number of workers of renders started from now on; 0 means one per core. The
+     * WorkerPool still runs no more workers at once than there are cores.
+     */
+    public static void setThreadCount(int n) {
+        threadCount = n;
+        coreCount = n > 0 ? n : Runtime.getRuntime().availableProcessors();
     }
 
     public static void setParameters(Engine.Parameters p) {
@@ -118,145 +355,1353 @@ public class Engine {
 
     }
 
+    /**
+     * Sets the share of a view's points that AUTOMATIC_ITERATIONS may leave inside the set although
+     * they escape at a higher limit.
+     */
+    public static void setUnresolvedTarget(double share) {
+        unresolvedTarget = share;
+    }
+
     public static void startRendering() {
+        startRendering(false);
+    }
+
+    /**
+     * Renders the current parameters as background work and keeps the result aside instead of
+     * showing it. Later renders copy whatever pixels of it they share, so a prefetched view comes up
+     * at once. Cancel it like any other render.
+     */
+    public static void startPrefetching() {
+        startRendering(true);
+    }
+
+    private static void startRendering(final boolean speculative) {
+        cancelled = false;
+        requested = params;
+        workerPriority = speculative ? WorkerPool.Priority.BACKGROUND : WorkerPool.Priority.INTERACTIVE;
+        publishing = !speculative;
+        handler.renderingBegun();
         new Thread(new Runnable() {
 
             @Override
             public void run() {
-                Object lock = new Object();
-                image = new BufferedImage(params.imgWidth, params.imgHeight, BufferedImage.TYPE_INT_RGB);
-                buffer = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                allocateBuffers();
+                if (publishing) {
+                    tiles.beginFrame(params.imgWidth, params.imgHeight);
+                }
                 stats = new Statistics(params.maxIters, 0, 0, 0, System.nanoTime());
-                launchThreads(lock);
+                stats.kernelName = kernel.getName();
                 try {
-                    synchronized (lock) {
-                        lock.wait();
+                    if (params.hasOption(Parameters.Option.AUTOMATIC_ITERATIONS) && !isOrbitRender(params)) {
+                        chooseIterationLimit();
+                    }
+                    if (isOrbitRender(params)) {
+                        renderOrbitDensity();
+                    } else {
+                        reuse = planReuse();
+                        mirror = planMirror();
+                        loadCachedTiles();
+                        regions = createTiles(params, squareX, squareY,
+                                probeCosts(params, kernel, knownCosts(), coreCount, workerPriority), coreCount);
+                        launchThreads(Pass.ITERATION);
+                        if (mirror != null && !cancelled) {
+                            mirrorRows();
+                        }
+                        if (!cancelled) {
+                            storeTiles();
+                        }
+                        if (params.hasOption(Parameters.Option.ANTI_ALIASING) && !cancelled) {
+                            launchThreads(Pass.ANTI_ALIASING);
+                        }
                     }
                 } catch (InterruptedException ex) {
                     Logger.getLogger(Engine.class.getName()).log(Level.SEVERE, null, ex);
                 }
                 stats.renderingTime = System.nanoTime() - stats.renderingTime;
+                if (publishing) {
+                    tiles.endFrame((long) stats.renderingTime, cancelled);
+                }
                 stats.renderingTime /= 1000000;
                 stats.meanIterations /= buffer.length;
+                if (!cancelled && speculative) {
+                    keepPrefetched();
+                } else if (!cancelled) {
+                    cacheFrame();
+                    handler.statsGenerated();
+                }
                 handler.renderingEnded();
-                handler.statsGenerated();
             }
         }).start();
+    }
+
+    /**
+     * Fills the image from a saved session instead of iterating; the session's parameters replace
+     * the current ones. Tiles are decompressed and coloured in parallel, and supersampling is redone
+     * if the session asked for it.
+     */
+    public static void startRestoring(final Session s) {
+        cancelled = false;
+        params = requested = s.getParameters();
+        workerPriority = WorkerPool.Priority.INTERACTIVE;
+        publishing = true;
         handler.renderingBegun();
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+
+                allocateBuffers();
+                if (!s.hasDistanceData()) {
+                    distData = null;
+                }
+                tiles.beginFrame(params.imgWidth, params.imgHeight);
+                stats = s.getStatistics();
+                session = s;
+                regions = s.getTiles();
+                try {
+                    launchThreads(Pass.RESTORE);
+                    if (params.hasOption(Parameters.Option.ANTI_ALIASING) && !isOrbitRender(params)
+                            && !cancelled) {
+                        stats.supersampledPoints = 0;
+                        launchThreads(Pass.ANTI_ALIASING);
+                    }
+                } catch (InterruptedException ex) {
+                    Logger.getLogger(Engine.class.getName()).log(Level.SEVERE, null, ex);
+                }
+                session = null;
+                tiles.endFrame(System.nanoTime() - start, cancelled);
+                if (!cancelled) {
+                    cacheFrame();
+                    handler.statsGenerated();
+                }
+                handler.renderingEnded();
+            }
+        }).start();
     }
 
+    /**
+     * Renders region of the last finished frame again with the iteration limit maxIters, if that is
+     * higher than the frame's, and with supersampling if antiAliasing is set, keeping the rest of
+     * the frame. The frame is copied first, so the shown one is untouched until the new one has
+     * finished, but only the region is iterated; the rest is coloured again at the new limit, its
+     * interior taken to stay inside, and supersampled again if the frame was. The statistics are
+     * counted from the merged frame, except that points filled by distance estimation are only
+     * counted in the region. Returns false, and does nothing, if there is no finished escape-time
+     * frame.
+     */
+    public static boolean startRegionRendering(Rectangle region, int maxIters, boolean antiAliasing) {
+        final RenderTarget source = front;
+        final Rectangle area;
+        EnumSet<Parameters.Option> options;
+        Parameters p;
+
+        if (source == null || isOrbitRender(source.params)) {
+            return false;
+        }
+        p = source.params;
+        area = region.intersection(new Rectangle(p.imgWidth, p.imgHeight));
+        if (area.isEmpty()) {
+            return false;
+        }
+        options = p.getOptions();
+        if (antiAliasing) {
+            options.add(Parameters.Option.ANTI_ALIASING);
+        }
+        cancelled = false;
+        params = requested = new Parameters(p.planeMinX, p.planeMaxX, p.planeMinY, p.planeMaxY, p.imgWidth,
+                p.imgHeight, Math.max(maxIters, p.maxIters), p.colMethod, p.kernel, options, p.rotation);
+        workerPriority = WorkerPool.Priority.INTERACTIVE;
+        publishing = true;
+        handler.renderingBegun();
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                List<Rectangle> inside, outside;
+
+                acquireTarget(params.imgWidth, params.imgHeight);
+                image = target.image;
+                buffer = target.buffer;
+                iterData = target.iterData;
+                kernel = source.kernel;
+                distData = null;
+                if (source.distData != null) {
+                    if (target.distBuffer == null) {
+                        target.distBuffer = new float[buffer.length];
+                    }
+                    distData = target.distBuffer;
+                }
+                stats = new Statistics(params.maxIters, 0, 0, 0, System.nanoTime());
+                stats.kernelName = source.stats.kernelName;
+                copyFrame(source, area);
+                reuse = null;
+                mirror = null;
+                frameCache = null;
+                cachedTiles = null;
+                inside = tilesOf(area);
+                outside = new ArrayList<>();
+                outside.addAll(tilesOf(new Rectangle(0, 0, params.imgWidth, area.y)));
+                outside.addAll(tilesOf(new Rectangle(0, area.y, area.x, area.height)));
+                outside.addAll(tilesOf(new Rectangle(area.x + area.width, area.y,
+                        params.imgWidth - area.x - area.width, area.height)));
+                outside.addAll(tilesOf(new Rectangle(0, area.y + area.height, params.imgWidth,
+                        params.imgHeight - area.y - area.height)));
+                tiles.beginFrame(params.imgWidth, params.imgHeight);
+                try {
+                    regions = inside;
+                    launchThreads(Pass.ITERATION);
+                    if (!cancelled) {
+                        regions = outside;
+                        launchThreads(Pass.COLOURING);
+                    }
+                    if (params.hasOption(Parameters.Option.ANTI_ALIASING) && !cancelled) {
+                        if (source.params.hasOption(Parameters.Option.ANTI_ALIASING)) {
+                            inside.addAll(outside);
+                        }
+                        regions = inside;
+                        launchThreads(Pass.ANTI_ALIASING);
+                    }
+                } catch (InterruptedException ex) {
+                    Logger.getLogger(Engine.class.getName()).log(Level.SEVERE, null, ex);
+                }
+                stats.renderingTime = System.nanoTime() - stats.renderingTime;
+                tiles.endFrame((long) stats.renderingTime, cancelled);
+                stats.renderingTime /= 1000000;
+                stats.meanIterations /= buffer.length;
+                if (!cancelled) {
+                    cacheFrame();
+                    target.refined = true;
+                    handler.statsGenerated();
+                }
+                handler.renderingEnded();
+            }
+        }).start();
+        return true;
+    }
+
+    /*
+     * Copies source into the target. Pixels outside the region that were inside the set get the
+     * new limit.
+     */
+    private static void copyFrame(RenderTarget source, Rectangle region) {
+        int oldLimit = source.params.maxIters, width = params.imgWidth;
+
+        System.arraycopy(source.buffer, 0, buffer, 0, buffer.length);
+        System.arraycopy(source.iterData, 0, iterData, 0, iterData.length);
+        if (distData != null) {
+            System.arraycopy(source.distData, 0, distData, 0, distData.length);
+        }
+        for (int j = 0; j < params.imgHeight; j++) {
+            for (int i = 0; i < width; i++) {
+                if (iterData[j * width + i] >= oldLimit && !region.contains(i, j)) {
+                    iterData[j * width + i] = params.maxIters;
+                }
+            }
+        }
+    }
+
+    /*
+     * Splits r into tiles of at most TILE_SIZE a side.
+     */
+    private static List<Rectangle> tilesOf(Rectangle r) {
+        List<Rectangle> l = new ArrayList<>();
+
+        for (int y = r.y; y < r.y + r.height; y += TILE_SIZE) {
+            for (int x = r.x; x < r.x + r.width; x += TILE_SIZE) {
+                l.add(new Rectangle(x, y, Math.min(TILE_SIZE, r.x + r.width - x),
+                        Math.min(TILE_SIZE, r.y + r.height - y)));
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Makes the workers stop after the tiles they are on; renderingEnded follows shortly.
+     */
+    public static void cancelRendering() {
+        cancelled = true;
+    }
+
+    /**
+     * Sets the file that orbit density renders save their accumulated grid to, and resume from when
+     * it holds the same view; null turns checkpointing off.
+     */
+    public static void setOrbitCheckpoint(File f) {
+        orbitCheckpoint = f;
+    }
+
+    /**
+     * Sets the disk cache that renders look their tiles up in before iterating and store the tiles
+     * they iterated in; null turns it off.
+     */
+    public static void setTileCache(TileCache c) {
+        tileCache = c;
+    }
+
+    public static boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns the stream of finished regions of every render other than a prefetch.
+     */
+    public static TileStream getTileStream() {
+        return tiles;
+    }
+
+    /**
+     * Returns the last finished frame, which no render writes to until another has finished.
+     */
     public static BufferedImage getImage() {
+        RenderTarget f = front;
+
+        return f == null ? null : f.image;
+    }
+
+    /**
+     * Returns the image being rendered into, or the last one rendered into, for progressive display.
+     */
+    static BufferedImage getRenderImage() {
         return image;
     }
 
     public static Statistics getStatistics() {
-        return stats;
+        RenderTarget f = front;
+
+        return f == null ? null : f.stats;
+    }
+
+    static Parameters getParameters() {
+        RenderTarget f = front;
+
+        return f == null ? null : f.params;
+    }
+
+    static float[] getIterationData() {
+        RenderTarget f = front;
+
+        return f == null ? null : f.iterData;
+    }
+
+    static float[] getDistanceData() {
+        RenderTarget f = front;
+
+        return f == null ? null : f.distData;
+    }
+
+    /**
+     * Tells whether a finished prefetch holds exactly the view p.
+     */
+    static boolean isPrefetched(Parameters p) {
+        synchronized (targets) {
+            for (RenderTarget t : prefetched) {
+                if (isSameView(t.requested, p)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the prefetched frames of views other than the given ones to the pool. A render that is
+     * running may still copy pixels from them: a pooled frame is only written to once a later render
+     * has acquired it.
+     */
+    static void retainPrefetched(List<Parameters> views) {
+        synchronized (targets) {
+            for (int n = prefetched.size() - 1; n >= 0; n--) {
+                boolean wanted = false;
+                for (Parameters p : views) {
+                    wanted |= isSameView(prefetched.get(n).requested, p);
+                }
+                if (!wanted) {
+                    targets.add(prefetched.remove(n));
+                }
+            }
+            trimPool();
+        }
+    }
+
+    private static boolean isSameView(Parameters a, Parameters b) {
+        return a.imgWidth == b.imgWidth && a.imgHeight == b.imgHeight && a.maxIters == b.maxIters
+                && a.originR == b.originR && a.originI == b.originI && a.colStepR == b.colStepR
+                && a.colStepI == b.colStepI && a.rowStepR == b.rowStepR && a.rowStepI == b.rowStepI
+                && a.kernel.getSpec().equals(b.kernel.getSpec()) && a.getOptions().equals(b.getOptions());
     }
 
     public static void cleanup() {
         image = null;
         buffer = null;
+        iterData = null;
+        distData = null;
         handler = null;
-        params = null;
+        requested = params = null;
+        kernel = null;
         stats = null;
-        regionQueue = null;
+        regions = null;
+        synchronized (targets) {
+            targets.clear();
+            prefetched.clear();
+            target = null;
+            front = null;
+        }
+        tiles.close();
+        reuse = null;
+        mirror = null;
+        orbits = null;
+        frameCache = null;
+        cachedTiles = null;
+    }
+
+    private static void allocateBuffers() {
+        acquireTarget(params.imgWidth, params.imgHeight);
+        image = target.image;
+        buffer = target.buffer;
+        iterData = target.iterData;
+        Arrays.fill(buffer, 0);
+        if (isOrbitRender(params)) {
+            kernel = params.kernel;
+            distData = null;
+            return;
+        }
+        kernel = planKernel(params);
+        if (params.hasOption(Parameters.Option.DISTANCE_ESTIMATION) && kernel.hasDistanceEstimate()) {
+            if (target.distBuffer == null) {
+                target.distBuffer = new float[buffer.length];
+            }
+            distData = target.distBuffer;
+        } else {
+            distData = null;
+        }
+    }
+
+    /*
+     * Makes a pooled target of the given size other than the front one the target, allocating only
+     * if there is none.
+     */
+    private static void acquireTarget(int width, int height) {
+        RenderTarget t = null;
+
+        synchronized (targets) {
+            for (RenderTarget c : targets) {
+                if (c != front && c.image.getWidth() == width && c.image.getHeight() == height) {
+                    t = c;
+                    break;
+                }
+            }
+            if (t == null) {
+                t = new RenderTarget(width, height);
+            } else {
+                targets.remove(t);
+            }
+            targets.add(0, t);
+            target = t;
+            trimPool();
+        }
+    }
+
+    /*
+     * Call with the lock of targets held.
+     */
+    private static void trimPool() {
+        for (int n = targets.size() - 1; n > 0 && targets.size() > POOL_SIZE; n--) {
+            if (targets.get(n) != front && targets.get(n) != target) {
+                targets.remove(n);
+            }
+        }
+    }
+
+    /*
+     * Makes the target just rendered the front one. The previous front target goes back to the pool
+     * and is the next one written to, so the displayed frame is never the one being rendered.
+     */
+    private static void cacheFrame() {
+        target.requested = requested;
+        target.params = params;
+        target.kernel = kernel;
+        target.stats = stats;
+        target.distData = distData;
+        target.refined = false;
+        synchronized (targets) {
+            front = target;
+        }
+    }
+
+    /*
+     * Moves the target just rendered speculatively out of the pool and in with the prefetched
+     * frames, returning the oldest of those beyond PREFETCH_LIMIT.
+     */
+    private static void keepPrefetched() {
+        target.requested = requested;
+        target.params = params;
+        target.kernel = kernel;
+        target.stats = stats;
+        target.distData = distData;
+        target.refined = false;
+        synchronized (targets) {
+            targets.remove(target);
+            prefetched.add(0, target);
+            while (prefetched.size() > PREFETCH_LIMIT) {
+                targets.add(prefetched.remove(prefetched.size() - 1));
+            }
+            trimPool();
+        }
+    }
+
+    /*
+     * Returns the last finished frame and the prefetched ones that this frame can copy pixels from,
+     * each with its reuseMap set, or null if there are none.
+     */
+    private static RenderTarget[] planReuse() {
+        List<RenderTarget> sources = new ArrayList<>();
+        RenderTarget f = front;
+
+        if (f != null && (f.reuseMap = planReuse(f)) != null) {
+            sources.add(f);
+        }
+        synchronized (targets) {
+            for (RenderTarget t : prefetched) {
+                if ((t.reuseMap = planReuse(t)) != null) {
+                    sources.add(t);
+                }
+            }
+        }
+        return sources.isEmpty() ? null : sources.toArray(new RenderTarget[sources.size()]);
+    }
+
+    /*
+     * Looks for an integer map from this frame's pixels onto a finished frame's, which exists when
+     * the two differ only by whole-pixel shifts and quarter turns at the same scale. Returns
+     * {u0, ui, uj, v0, vi, vj}, taking pixel (i, j) to (u0 + i * ui + j * uj, v0 + i * vi + j * vj)
+     * of the finished frame, or null.
+     */
+    private static int[] planReuse(RenderTarget t) {
+        Parameters c = t.params;
+        double det, dR, dI, m[] = new double[6];
+        int map[] = new int[6];
+
+        if (t.refined || isOrbitRender(c) || isOrbitRender(params) || c.maxIters != params.maxIters
+                || !t.kernel.getSpec().equals(kernel.getSpec())
+                || (t.distData == null) != (distData == null)) {
+            return null;
+        }
+        det = c.colStepR * c.rowStepI - c.colStepI * c.rowStepR;
+        dR = params.originR - c.originR;
+        dI = params.originI - c.originI;
+        m[0] = (dR * c.rowStepI - dI * c.rowStepR) / det;
+        m[1] = (params.colStepR * c.rowStepI - params.colStepI * c.rowStepR) / det;
+        m[2] = (params.rowStepR * c.rowStepI - params.rowStepI * c.rowStepR) / det;
+        m[3] = (c.colStepR * dI - c.colStepI * dR) / det;
+        m[4] = (c.colStepR * params.colStepI - c.colStepI * params.colStepR) / det;
+        m[5] = (c.colStepR * params.rowStepI - c.colStepI * params.rowStepR) / det;
+        for (int k = 0; k < m.length; k++) {
+            if (!(Math.abs(m[k]) < 1 << 20) || Math.abs(m[k] - Math.rint(m[k])) > REUSE_TOLERANCE) {
+                return null;
+            }
+            map[k] = (int) Math.rint(m[k]);
+        }
+        return map;
+    }
+
+    /*
+     * Returns, for each row, the row whose pixels it mirrors in the real axis, MIRROR_SOURCE if it is
+     * mirrored, or -1. Only rows of the smaller half whose sample points are exactly the conjugates
+     * of another row's are mirrored, so the frame comes out the same; null if there are none.
+     */
+    private static int[] planMirror() {
+        int rows = params.imgHeight, map[], above = 0, below = 0, mirrored = 0;
+        double sum;
+
+        if (isOrbitRender(params) || !kernel.isConjugateSymmetric() || params.colStepI != 0
+                || params.rowStepR != 0 || params.rowStepI == 0) {
+            return null;
+        }
+        for (int j = 0; j < rows; j++) {
+            above += rowImaginary(j) > 0 ? 1 : 0;
+            below += rowImaginary(j) < 0 ? 1 : 0;
+        }
+        sum = Math.rint(-2 * params.originI / params.rowStepI);
+        if (above == 0 || below == 0 || !(Math.abs(sum) < 2 * rows)) {
+            return null;
+        }
+        map = new int[rows];
+        Arrays.fill(map, -1);
+        for (int j = 0; j < rows; j++) {
+            int k = (int) sum - j;
+            if ((above < below ? rowImaginary(j) > 0 : rowImaginary(j) < 0) && k >= 0 && k < rows
+                    && rowImaginary(k) == -rowImaginary(j)) {
+                map[j] = k;
+                map[k] = MIRROR_SOURCE;
+                mirrored++;
+            }
+        }
+        return mirrored > 0 ? map : null;
+    }
+
+    /*
+     * The imaginary part of row j's sample points, rounded as the kernels round it.
+     */
+    private static double rowImaginary(int j) {
+        return params.originI + params.rowStepI * j;
     }
 
-    private static void launchThreads(final Object lock) {
-        int stripWidth = params.imgWidth / (coreCount * 10) + 1, resdlWidth = params.imgWidth % stripWidth;
+    /*
+     * Copies the mirrored rows from the rows the iteration pass computed, which have already been
+     * counted twice in stats.
+     */
+    private static void mirrorRows() {
+        int width = params.imgWidth, top = -1, bottom = -1;
+        long start = System.nanoTime();
 
-        int startIndex = 0;
-        regionQueue = new ArrayBlockingQueue<>(params.imgWidth / stripWidth + 1);
-        do {
-            regionQueue.add(new Rectangle(startIndex, 0, stripWidth, params.imgHeight));
-            startIndex += stripWidth;
-        } while (startIndex + stripWidth <= params.imgWidth);
+        for (int j = 0; j < mirror.length; j++) {
+            if (mirror[j] < 0) {
+                continue;
+            }
+            System.arraycopy(iterData, mirror[j] * width, iterData, j * width, width);
+            System.arraycopy(buffer, mirror[j] * width, buffer, j * width, width);
+            if (distData != null) {
+                System.arraycopy(distData, mirror[j] * width, distData, j * width, width);
+            }
+            top = top < 0 ? j : top;
+            bottom = j;
+        }
+        regionFinished(new Rectangle(0, top, width, bottom - top + 1), System.nanoTime() - start);
+    }
+
+    private static boolean isOrbitRender(Parameters p) {
+        return p.hasOption(Parameters.Option.ORBIT_DENSITY) && p.kernel.hasOrbits();
+    }
+
+    /*
+     * Probes the importance cells on all cores, then traces batches of orbits until this render's
+     * share of samples is spent, showing the grid every PROGRESS_INTERVAL milliseconds. Each worker
+     * adds its buffered hits to the grid whenever they fill, and at least twice per interval. The
+     * grid carries over to the next render of the same view, which refines it further.
+     */
+    private static void renderOrbitDensity() throws InterruptedException {
+        final boolean bounded = params.hasOption(Parameters.Option.BOUNDED_ORBITS);
+        final AtomicInteger nextJob = new AtomicInteger();
+        final int batches = (int) Math.max(1, (long) buffer.length * ORBIT_SAMPLES_PER_PIXEL / ORBIT_BATCH);
+        final long firstBatch;
+        long lastCheckpoint = System.nanoTime();
+        CountDownLatch latch;
+
+        if (orbits == null || !orbits.matches(params, kernel, bounded)) {
+            orbits = null;
+            if (orbitCheckpoint != null && orbitCheckpoint.exists()) {
+                try {
+                    orbits = OrbitDensity.readCheckpoint(orbitCheckpoint, params, kernel, bounded);
+                } catch (IOException ex) {
+                    Logger.getLogger(Engine.class.getName()).log(Level.WARNING, null, ex);
+                }
+            }
+            if (orbits == null) {
+                orbits = new OrbitDensity(params, kernel, bounded);
+            }
+        }
+        if (!orbits.isProbed()) {
+            latch = startWorkers(new Runnable() {
+                @Override
+                public void run() {
+                    double orbit[] = new double[2 * params.maxIters];
+                    for (int row; !cancelled && (row = nextJob.getAndIncrement()) < OrbitDensity.getCellRows();) {
+                        orbits.probeRow(row, orbit);
+                    }
+                }
+            });
+            latch.await();
+            if (cancelled) {
+                return;
+            }
+            orbits.finishProbing();
+        }
+
+        firstBatch = orbits.getSamples() / ORBIT_BATCH;
+        nextJob.set(0);
+        latch = startWorkers(new Runnable() {
+            @Override
+            public void run() {
+                OrbitDensity.Hits hits = new OrbitDensity.Hits();
+                double orbit[] = new double[2 * params.maxIters];
+                long lastMerge = System.nanoTime();
+
+                for (int b; !cancelled && (b = nextJob.getAndIncrement()) < batches;) {
+                    orbits.sample(firstBatch + b, ORBIT_BATCH, hits, orbit, stats);
+                    WorkerPool.checkpoint();
+                    if (System.nanoTime() - lastMerge > PROGRESS_INTERVAL * 500000) {
+                        orbits.merge(hits);
+                        lastMerge = System.nanoTime();
+                    }
+                }
+                orbits.merge(hits);
+            }
+        });
+        while (!latch.await(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS)) {
+            showOrbitDensity();
+            if (orbitCheckpoint != null && System.nanoTime() - lastCheckpoint > CHECKPOINT_INTERVAL * 1000000) {
+                saveOrbitCheckpoint();
+                lastCheckpoint = System.nanoTime();
+            }
+        }
+        showOrbitDensity();
+        if (orbitCheckpoint != null) {
+            saveOrbitCheckpoint();
+        }
+    }
 
-        if (resdlWidth != 0) {
-            regionQueue.add(new Rectangle(startIndex, 0, resdlWidth, params.imgHeight));
+    private static void showOrbitDensity() {
+        Rectangle all = new Rectangle(params.imgWidth, params.imgHeight);
+        long start = System.nanoTime();
+
+        orbits.normalise(iterData);
+        colourRegion(all);
+        regionFinished(all, System.nanoTime() - start);
+    }
+
+    private static void saveOrbitCheckpoint() {
+        try {
+            orbits.writeCheckpoint(orbitCheckpoint);
+        } catch (IOException ex) {
+            Logger.getLogger(Engine.class.getName()).log(Level.WARNING, null, ex);
         }
+    }
+
+    /*
+     * Probes a sparse grid of the view to find how the escape times of its points are spread, and
+     * replaces params with a copy whose limit leaves at most the unresolved target of them inside
+     * the set. Points that have not escaped carry on from their last iterate at each doubling, and
+     * points the kernel knows to be inside are not iterated at all.
+     */
+    private static void chooseIterationLimit() throws InterruptedException {
+        final int step = Math.max(1, (int) Math.sqrt(buffer.length / (double) LIMIT_PROBES)),
+                cols = (params.imgWidth + step - 1) / step, rows = (params.imgHeight + step - 1) / step;
+        final float escapes[] = new float[cols * rows];
+        final double orbits[] = new double[2 * escapes.length];
+        final boolean inside[] = new boolean[escapes.length];
+        final AtomicInteger nextRow = new AtomicInteger();
+        final double target = unresolvedTarget;
+        final int probing[] = {Math.min(LIMIT_PROBE_START, params.maxIters), 0};
+        final int allowed = (int) (target * escapes.length);
+        float sorted[];
+        int escaped, fresh, limit, beyond;
 
-        threadCount = 0;
-        for (int i = 1; i <= coreCount; i++) {
-            new Thread(new Runnable() {
+        Arrays.fill(escapes, Float.NaN);
+        while (true) {
+            final int probeLimit = probing[0], probed = probing[1];
 
+            nextRow.set(0);
+            startWorkers(new Runnable() {
                 @Override
                 public void run() {
-                    Rectangle region = regionQueue.poll();
-                    while (region != null) {
-                        renderRegionPrimitive(region);
-                        handler.regionRendered(region);
-                        region = regionQueue.poll();
+                    double z[] = new double[2];
+
+                    for (int pj; (pj = nextRow.getAndIncrement()) < rows;) {
+                        for (int pi = 0; pi < cols; pi++) {
+                            int i = Math.min(pi * step + step / 2, params.imgWidth - 1),
+                                    j = Math.min(pj * step + step / 2, params.imgHeight - 1),
+                                    n = pj * cols + pi;
+                            double cR = params.originR + i * params.colStepR + j * params.rowStepR,
+                                    cI = params.originI + i * params.colStepI + j * params.rowStepI;
+                            float e;
+
+                            if (!Float.isNaN(escapes[n]) || inside[n]) {
+                                continue;
+                            }
+                            if (probed == 0) {
+                                inside[n] = kernel.isKnownInterior(cR, cI);
+                                orbits[2 * n] = cR;
+                                orbits[2 * n + 1] = cI;
+                                if (inside[n]) {
+                                    continue;
+                                }
+                            }
+                            z[0] = orbits[2 * n];
+                            z[1] = orbits[2 * n + 1];
+                            e = kernel.resumePoint(cR, cI, z, probed, probeLimit);
+                            orbits[2 * n] = z[0];
+                            orbits[2 * n + 1] = z[1];
+                            if (e < probeLimit) {
+                                escapes[n] = e;
+                            }
+                        }
                     }
+                }
+            }).await();
+            escaped = fresh = 0;
+            for (float e : escapes) {
+                escaped += Float.isNaN(e) ? 0 : 1;
+                fresh += e * 2 >= probeLimit ? 1 : 0;
+            }
+            // Going on while nothing has escaped finds the limit of deep views, whose points all
+            // take long to escape.
+            if (cancelled || probeLimit >= params.maxIters || escaped > 0 && fresh <= allowed / 2) {
+                break;
+            }
+            probing[1] = probeLimit;
+            probing[0] = (int) Math.min(params.maxIters, 2L * probeLimit);
+        }
+
+        sorted = escapes.clone();
+        Arrays.sort(sorted); // The unresolved NaNs go last.
+        // As many points as escaped in the last doubling are taken to escape beyond it. The limit
+        // lets all but the rest of the allowance escape; smooth counts lie within two iterations
+        // below the escape iteration.
+        beyond = Math.max(0, allowed - fresh);
+        limit = escaped > beyond ? (int) Math.ceil(sorted[escaped - beyond - 1]) + 2 : MIN_LIMIT;
+        limit = Math.min(params.maxIters, roundLimit(Math.max(MIN_LIMIT, limit)));
+        beyond = fresh;
+        for (int n = 0; n < escaped; n++) {
+            beyond += sorted[n] + 2 > limit ? 1 : 0;
+        }
+        params = new Parameters(params.planeMinX, params.planeMaxX, params.planeMinY, params.planeMaxY,
+                params.imgWidth, params.imgHeight, limit, params.colMethod, params.kernel, params.options,
+                params.rotation);
+        stats.minIterations = limit;
+        stats.iterationLimit = limit;
+        stats.unresolvedShare = beyond / (double) escapes.length;
+    }
+
+    /*
+     * Rounds n up to the next of 1, 1.25, 1.5 or 1.75 times a power of two.
+     */
+    private static int roundLimit(int n) {
+        long power = Integer.highestOneBit(n);
 
-                    if (threadCount == 1) {
-                        synchronized (lock) {
-                            lock.notify();
+        for (int m = 4; m < 8; m++) {
+            if (power * m / 4 >= n) {
+                return (int) (power * m / 4);
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, power * 2);
+    }
+
+    private static boolean isPreciseEnough(Kernel k, Parameters p) {
+        double magnitude = Math.max(Math.max(Math.abs(p.planeMinX), Math.abs(p.planeMaxX)),
+                Math.max(Math.abs(p.planeMinY), Math.abs(p.planeMaxY)));
+
+        return Math.min(p.planeXUnit, p.planeYUnit) >= k.getEpsilon() * magnitude * PRECISION_MARGIN;
+    }
+
+    /*
+     * Walks the requested kernel's precision variants up until one resolves a pixel. Lower
+     * precision is never substituted: it rounds differently on the boundary and, on HotSpot's
+     * scalar path, runs no faster.
+     */
+    static Kernel planKernel(Parameters p) {
+        Kernel k = p.kernel;
+
+        if (!p.hasOption(Parameters.Option.AUTOMATIC_PRECISION)) {
+            return k;
+        }
+        while (!isPreciseEnough(k, p) && k.getHigherPrecision() != null) {
+            k = k.getHigherPrecision();
+        }
+        return k;
+    }
+
+    /*
+     * Reads the frame's TILE_SIZE squares that the tile cache holds into iterData and distData, and
+     * records which they were in cachedTiles. The squares are those of the cache's grid on the
+     * plane, so a view panned by whole pixels finds the same ones. Orbit renders and rotated views
+     * do not use the cache.
+     */
+    private static void loadCachedTiles() throws InterruptedException {
+        final AtomicInteger next = new AtomicInteger();
+        long grid[];
+
+        frameCache = tileCache;
+        cachedTiles = null;
+        squareX = squareY = 0;
+        grid = frameCache == null ? null : TileCache.gridOrigin(params);
+        if (grid == null) {
+            frameCache = null;
+            return;
+        }
+        squareX = -(int) Math.floorMod(grid[0], (long) TILE_SIZE);
+        squareY = -(int) Math.floorMod(grid[1], (long) TILE_SIZE);
+        squareCols = (params.imgWidth - squareX + TILE_SIZE - 1) / TILE_SIZE;
+        cachedTiles = new boolean[squareCols
+                * ((params.imgHeight - squareY + TILE_SIZE - 1) / TILE_SIZE)];
+        startWorkers(new Runnable() {
+            @Override
+            public void run() {
+                for (int t; (t = next.getAndIncrement()) < cachedTiles.length;) {
+                    try {
+                        cachedTiles[t] = frameCache.read(params, kernel,
+                                cacheTile(t % squareCols, t / squareCols), iterData, distData);
+                    } catch (IOException ex) {
+                        Logger.getLogger(Engine.class.getName()).log(Level.SEVERE, null, ex);
+                    }
+                }
+            }
+        }).await();
+    }
+
+    /*
+     * Stores the squares that were not found in the tile cache. Stops early if the render is
+     * cancelled, so that the next one does not wait.
+     */
+    private static void storeTiles() throws InterruptedException {
+        final AtomicInteger next = new AtomicInteger();
+
+        if (frameCache == null) {
+            return;
+        }
+        startWorkers(new Runnable() {
+            @Override
+            public void run() {
+                for (int t; (t = next.getAndIncrement()) < cachedTiles.length && !cancelled;) {
+                    if (cachedTiles[t]) {
+                        continue;
+                    }
+                    try {
+                        frameCache.write(params, kernel, cacheTile(t % squareCols, t / squareCols), iterData,
+                                distData);
+                    } catch (IOException ex) {
+                        Logger.getLogger(Engine.class.getName()).log(Level.SEVERE, null, ex);
+                        return;
+                    }
+                }
+            }
+        }).await();
+    }
+
+    private static Rectangle cacheTile(int col, int row) {
+        return new Rectangle(squareX + col * TILE_SIZE, squareY + row * TILE_SIZE, TILE_SIZE, TILE_SIZE)
+                .intersection(new Rectangle(params.imgWidth, params.imgHeight));
+    }
+
+    /*
+     * Tells whether pixel (i, j) lies in a square read from the tile cache. Every region lies within
+     * one square, since regions are cut from the squares.
+     */
+    private static boolean isCached(int i, int j) {
+        return cachedTiles != null
+                && cachedTiles[(j - squareY) / TILE_SIZE * squareCols + (i - squareX) / TILE_SIZE];
+    }
+
+    /*
+     * Returns the probe costs that the frame being rendered already knows: nothing for points that
+     * are reused, mirrored or cached, and the last frame's iteration count for points it covered.
+     */
+    private static KnownCosts knownCosts() {
+        final RenderTarget c = front;
+        final RenderTarget sources[] = reuse;
+        final boolean useCache = c != null && !isOrbitRender(c.params)
+                && c.params.maxIters == params.maxIters && c.kernel.getSpec().equals(kernel.getSpec());
+
+        return new KnownCosts() {
+            @Override
+            public long cost(int i, int j, double cR, double cI) {
+                if (sources != null && findSource(sources, i, j) != null
+                        || mirror != null && mirror[j] >= 0 || isCached(i, j)) {
+                    return 0;
+                }
+                if (useCache) {
+                    double pixel[] = new double[2];
+                    c.params.toPixel(cR, cI, pixel);
+                    int u = (int) Math.floor(pixel[0] + 0.5), v = (int) Math.floor(pixel[1] + 0.5);
+                    if (u >= 0 && u < c.params.imgWidth && v >= 0 && v < c.params.imgHeight) {
+                        return (long) Math.ceil(c.iterData[v * c.params.imgWidth + u]);
+                    }
+                }
+                return -1;
+            }
+        };
+    }
+
+    /**
+     * Cuts p's image into TILE_SIZE squares from (x0, y0) and returns them costliest first, so that
+     * no expensive tile is left to start once the other workers have run out; the costliest are
+     * split until each is a small share of the total for the given number of workers. costs are
+     * those of probeCosts.
+     */
+    static List<Rectangle> createTiles(Parameters p, int x0, int y0, final long[] costs, int workers) {
+        final int probeCols = (p.imgWidth + PROBE_STEP - 1) / PROBE_STEP;
+        Comparator<Rectangle> costliestFirst = new Comparator<Rectangle>() {
+            @Override
+            public int compare(Rectangle a, Rectangle b) {
+                return Long.compare(tileCost(b, costs, probeCols), tileCost(a, costs, probeCols));
+            }
+        };
+        PriorityQueue<Rectangle> queue = new PriorityQueue<>(64, costliestFirst);
+        List<Rectangle> tiles = new ArrayList<>();
+        long totalCost = 0, maxCost;
+
+        for (long c : costs) {
+            totalCost += c;
+        }
+        maxCost = totalCost / (workers * SPLIT_FACTOR);
+        for (int y = y0; y < p.imgHeight; y += TILE_SIZE) {
+            for (int x = x0; x < p.imgWidth; x += TILE_SIZE) {
+                queue.add(new Rectangle(x, y, TILE_SIZE, TILE_SIZE)
+                        .intersection(new Rectangle(p.imgWidth, p.imgHeight)));
+            }
+        }
+        while (!queue.isEmpty() && tileCost(queue.peek(), costs, probeCols) > maxCost) {
+            Rectangle r = queue.poll();
+            if (r.width <= MIN_TILE_SIZE && r.height <= MIN_TILE_SIZE) {
+                tiles.add(r);
+                continue;
+            }
+            // Halves stay multiples of PROBE_STEP so that each probe falls in exactly one tile, unless
+            // the tile cache's grid has moved the squares off the probes'.
+            if (r.width >= r.height) {
+                int half = (r.width / 2 + PROBE_STEP - 1) / PROBE_STEP * PROBE_STEP;
+                queue.add(new Rectangle(r.x, r.y, half, r.height));
+                queue.add(new Rectangle(r.x + half, r.y, r.width - half, r.height));
+            } else {
+                int half = (r.height / 2 + PROBE_STEP - 1) / PROBE_STEP * PROBE_STEP;
+                queue.add(new Rectangle(r.x, r.y, r.width, half));
+                queue.add(new Rectangle(r.x, r.y + half, r.width, r.height - half));
+            }
+        }
+        tiles.addAll(queue);
+        Collections.sort(tiles, costliestFirst);
+        return tiles;
+    }
+
+    /**
+     * Estimates the cost of each PROBE_STEP square of p's image from its centre, on the given
+     * number of workers. Probes that known, if not null, has a cost for take it; the rest are
+     * iterated with k, which costs about 1 / PROBE_STEP^2 of the frame.
+     */
+    static long[] probeCosts(final Parameters p, final Kernel k, final KnownCosts known, int workers,
+            WorkerPool.Priority priority) throws InterruptedException {
+        final int cols = (p.imgWidth + PROBE_STEP - 1) / PROBE_STEP,
+                rows = (p.imgHeight + PROBE_STEP - 1) / PROBE_STEP;
+        final long costs[] = new long[cols * rows];
+        final AtomicInteger nextRow = new AtomicInteger();
+
+        WorkerPool.start(workers, priority, new Runnable() {
+            @Override
+            public void run() {
+                for (int pj; (pj = nextRow.getAndIncrement()) < rows;) {
+                    for (int pi = 0; pi < cols; pi++) {
+                        int i = Math.min(pi * PROBE_STEP + PROBE_STEP / 2, p.imgWidth - 1),
+                                j = Math.min(pj * PROBE_STEP + PROBE_STEP / 2, p.imgHeight - 1);
+                        double cR = p.originR + i * p.colStepR + j * p.rowStepR,
+                                cI = p.originI + i * p.colStepI + j * p.rowStepI;
+                        long cost = known != null ? known.cost(i, j, cR, cI) : -1;
+
+                        if (cost < 0) {
+                            cost = (long) Math.ceil(k.iteratePoint(cR, cI, p.maxIters, null));
                         }
+                        costs[pj * cols + pi] = (cost + PIXEL_COST)
+                                * (Math.min(PROBE_STEP, p.imgWidth - pi * PROBE_STEP)
+                                * Math.min(PROBE_STEP, p.imgHeight - pj * PROBE_STEP));
                     }
-                    threadCount--;
                 }
-            }).start();
-            threadCount++;
+            }
+        }).await();
+        return costs;
+    }
+
+    private static long tileCost(Rectangle r, long[] costs, int probeCols) {
+        long cost = 0;
+
+        for (int pj = r.y / PROBE_STEP; pj * PROBE_STEP < r.y + r.height; pj++) {
+            for (int pi = r.x / PROBE_STEP; pi * PROBE_STEP < r.x + r.width; pi++) {
+                cost += costs[pj * probeCols + pi];
+            }
         }
+        return cost;
     }
 
-    private static int pixelColour(int iters, double zR, double zI) {
-        if (iters == params.maxIters) {
+    private static void launchThreads(final Pass pass) throws InterruptedException {
+        final long finished[] = new long[coreCount];
+        final AtomicInteger nextWorker = new AtomicInteger(), nextRegion = new AtomicInteger();
+        final List<Rectangle> queue = regions;
+        long last = 0, idle = 0;
+
+        startWorkers(new Runnable() {
+
+            @Override
+            public void run() {
+                int worker = nextWorker.getAndIncrement();
+                for (int n; (n = nextRegion.getAndIncrement()) < queue.size() && !cancelled;) {
+                    Rectangle region = queue.get(n);
+                    long start = System.nanoTime();
+                    if (pass == Pass.ITERATION) {
+                        renderRegionPrimitive(region);
+                    } else if (pass == Pass.RESTORE) {
+                        restoreRegion(n, region);
+                    } else if (pass == Pass.COLOURING) {
+                        colourRegion(region);
+                        countRegion(region, stats);
+                    } else {
+                        antiAliasRegion(region);
+                    }
+                    regionFinished(region, System.nanoTime() - start);
+                    WorkerPool.checkpoint();
+                }
+                finished[worker] = System.nanoTime();
+            }
+        }).await();
+        for (long f : finished) {
+            last = Math.max(last, f);
+        }
+        for (long f : finished) {
+            idle += last - f;
+        }
+        synchronized (stats) {
+            stats.idleTime += idle / 1e6;
+        }
+    }
+
+    private static void regionFinished(Rectangle region, long nanos) {
+        handler.regionRendered(region);
+        if (publishing) {
+            tiles.publish(region, buffer, iterData, nanos);
+        }
+    }
+
+    /*
+     * Runs work on coreCount workers of the current render's priority; the returned latch opens
+     * once all have finished.
+     */
+    private static CountDownLatch startWorkers(Runnable work) {
+        return WorkerPool.start(coreCount, workerPriority, work);
+    }
+
+    private static int pixelColour(float iters, float dist) {
+        return pixelColour(params, iters, dist);
+    }
+
+    /**
+     * Returns the colour of a pixel of a p render with smooth iteration count iters and distance
+     * estimate dist, in pixels.
+     */
+    static int pixelColour(Parameters p, float iters, float dist) {
+        if (iters >= p.maxIters) {
             return 0;
         }
-        float ratio = (float) (iters - Math.log(Math.log(Math.sqrt(zR * zR + zI * zI)))) / params.maxIters;
-        return Color.HSBtoRGB(ratio, 1.0f, 0.8f);
+        if (dist < 1) {
+            return Color.HSBtoRGB(iters / p.maxIters, 1.0f, 0.8f * (float) Math.sqrt(dist));
+        }
+        return Color.HSBtoRGB(iters / p.maxIters, 1.0f, 0.8f);
     }
 
-    private static void renderRegionPrimitive(Rectangle region) {
-        int k, convCount = 0, totalIterationCount = 0, minIterationCount = params.maxIters,
-                maxIterationCount = 1;
-        double zR, cR, aR, zI, cI, aI, planeXUnit, planeYUnit, temp;
-
-        planeXUnit = params.planeXUnit;
-        planeYUnit = params.planeYUnit;
-        aR = params.planeMinX + region.x * planeXUnit;
-        aI = params.planeMaxY - region.y * planeYUnit;
-        for (int i = 0; i < region.width; i++) {
-            for (int j = 0; j < region.height; j++) {
-                zR = cR = aR + planeXUnit * i;
-                zI = cI = aI - planeYUnit * j;
-                k = 0;
-
-                while (k < params.maxIters) {
-                    if (zR * zR + zI * zI > (double) 25) {
-                        break;
-                    }
+    private static int densityColour(float density) {
+        int v = (int) (255 * density);
+
+        return (v << 16) | (v << 8) | v;
+    }
+
+    private static int pixelColour(int dataIdx) {
+        return pixelColour(iterData[dataIdx], distData == null ? Float.POSITIVE_INFINITY : distData[dataIdx]);
+    }
+
+    private static int sampleColour(double cR, double cI, double[] dist) {
+        float iters = kernel.iteratePoint(cR, cI, params.maxIters, dist);
+
+        return pixelColour(iters, (float) (dist[0] / Math.max(params.planeXUnit, params.planeYUnit)));
+    }
+
+    private static boolean isEdgePixel(int x, int y) {
+        int idx = y * params.imgWidth + x;
+        float v = iterData[idx], threshold = (float) Math.max(1, params.maxIters * AA_THRESHOLD);
 
-                    temp = zR;
-                    zR = zR * zR - zI * zI + cR;
-                    zI = 2 * temp * zI + cI;
-                    k++;
+        return x > 0 && Math.abs(iterData[idx - 1] - v) > threshold
+                || x < params.imgWidth - 1 && Math.abs(iterData[idx + 1] - v) > threshold
+                || y > 0 && Math.abs(iterData[idx - params.imgWidth] - v) > threshold
+                || y < params.imgHeight - 1 && Math.abs(iterData[idx + params.imgWidth] - v) > threshold;
+    }
+
+    /*
+     * Only reads iterData, so neighbouring regions can be processed concurrently. The jitter is
+     * seeded from the pixel index, which keeps repeated renders of the same view identical.
+     */
+    private static void antiAliasRegion(Rectangle region) {
+        int sampleCount = 0;
+        double dist[] = new double[1];
+
+        for (int i = region.x; i < region.x + region.width; i++) {
+            for (int j = region.y; j < region.y + region.height; j++) {
+                if (!isEdgePixel(i, j)) {
+                    continue;
+                }
+                int dataIdx = j * params.imgWidth + i, red = 0, green = 0, blue = 0, seed = dataIdx * 0x9E3779B9;
+
+                for (int m = 0; m < AA_GRID; m++) {
+                    for (int n = 0; n < AA_GRID; n++) {
+                        seed = seed * 1664525 + 1013904223;
+                        double jitX = (seed >>> 8) / (double) (1 << 24);
+                        seed = seed * 1664525 + 1013904223;
+                        double jitY = (seed >>> 8) / (double) (1 << 24);
+                        double x = i - 0.5 + (m + jitX) / AA_GRID, y = j - 0.5 + (n + jitY) / AA_GRID;
+                        int rgb = sampleColour(params.originR + x * params.colStepR + y * params.rowStepR,
+                                params.originI + x * params.colStepI + y * params.rowStepI, dist);
+                        red += (rgb >> 16) & 0xFF;
+                        green += (rgb >> 8) & 0xFF;
+                        blue += rgb & 0xFF;
+                    }
                 }
+                red /= AA_GRID * AA_GRID;
+                green /= AA_GRID * AA_GRID;
+                blue /= AA_GRID * AA_GRID;
+                buffer[dataIdx] = (red << 16) | (green << 8) | blue;
+                sampleCount++;
+            }
+        }
+        synchronized (stats) {
+            stats.supersampledPoints += sampleCount;
+        }
+    }
+
+    /*
+     * Mirrored rows are skipped; mirrorRows fills them in once the pass is over. Runs of the rows
+     * they are copied from are counted twice, so that stats come out as if every row were computed.
+     */
+    private static void renderRegionPrimitive(Rectangle region) {
+        int end = region.y + region.height;
+
+        for (int from = region.y, to; from < end; from = to) {
+            int kind = mirror == null ? -1 : Math.min(mirror[from], 0);
+            to = from + 1;
+            if (kind == 0) {
+                continue;
+            }
+            while (to < end && (mirror == null ? -1 : Math.min(mirror[to], 0)) == kind) {
+                to++;
+            }
+            Rectangle r = new Rectangle(region.x, from, region.width, to - from);
+            Statistics st = kind == MIRROR_SOURCE ? new Statistics(params.maxIters, 0, 0, 0, 0) : stats;
+            if (isCached(r.x, r.y)) {
+                countRegion(r, st);
+            } else if (reuse == null) {
+                iterateRegion(r, st);
+            } else {
+                reuseRegion(r, st);
+            }
+            if (st != stats) {
+                stats.add(2 * st.convergentPoints, 2 * st.estimatedPoints, st.minIterations,
+                        st.maxIterations, 2 * (long) st.meanIterations);
+            }
+            colourRegion(r);
+        }
+    }
+
+    private static void iterateRegion(Rectangle region, Statistics st) {
+        if (distData != null) {
+            kernel.iterateRegionEstimated(params, region, iterData, distData, st);
+        } else {
+            kernel.iterateRegion(params, region, iterData, st);
+        }
+    }
+
+    /*
+     * Adds to st the statistics of a region whose values were read rather than iterated.
+     */
+    private static void countRegion(Rectangle region, Statistics st) {
+        int conPts = 0, minIter = params.maxIters, maxIter = 0;
+        long totalIters = 0;
+
+        for (int j = region.y; j < region.y + region.height; j++) {
+            for (int i = region.x; i < region.x + region.width; i++) {
+                // As in reuseRegion, the smoothed count rounds up to the integer one.
+                int k = (int) Math.ceil(iterData[j * params.imgWidth + i]);
                 if (k < params.maxIters) {
-                    convCount++;
+                    conPts++;
+                }
+                maxIter = Math.max(maxIter, k);
+                minIter = Math.min(minIter, k);
+                totalIters += k;
+            }
+        }
+        st.add(conPts, 0, minIter, maxIter, totalIters);
+    }
+
+    /*
+     * Returns the first of the sources that covers pixel (i, j), or null.
+     */
+    private static RenderTarget findSource(RenderTarget[] sources, int i, int j) {
+        for (RenderTarget t : sources) {
+            int map[] = t.reuseMap;
+            long u = map[0] + (long) i * map[1] + (long) j * map[2],
+                    v = map[3] + (long) i * map[4] + (long) j * map[5];
+            if (u >= 0 && u < t.params.imgWidth && v >= 0 && v < t.params.imgHeight) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Copies the pixels that land on a finished frame and iterates the runs between them, column by
+     * column so that the distance estimate can still skip down each run.
+     */
+    private static void reuseRegion(Rectangle region, Statistics st) {
+        int conPts = 0, minIter = params.maxIters, maxIter = 0, copied = 0, end = region.y + region.height;
+        long totalIters = 0;
+
+        for (int i = region.x; i < region.x + region.width; i++) {
+            int from = region.y;
+            for (int j = region.y; j < end; j++) {
+                RenderTarget t = findSource(reuse, i, j);
+                if (t == null) {
+                    continue;
                 }
-                if (k > maxIterationCount) {
-                    maxIterationCount = k;
+                if (j > from) {
+                    iterateRegion(new Rectangle(i, from, 1, j - from), st);
                 }
-                if (k < minIterationCount) {
-                    minIterationCount = k;
+                from = j + 1;
+
+                int map[] = t.reuseMap, k;
+                int src = (map[3] + i * map[4] + j * map[5]) * t.params.imgWidth + map[0] + i * map[1]
+                        + j * map[2], dst = j * params.imgWidth + i;
+                iterData[dst] = t.iterData[src];
+                if (distData != null) {
+                    distData[dst] = t.distData[src];
                 }
-                totalIterationCount += k;
-                int dataIdx = (region.y + j) * params.imgWidth + region.x + i;
-                buffer[dataIdx] = pixelColour(k, zR, zI);
+                // Escaping orbits end with 5 < |z| < e^e nearly always, which puts the smoothed count
+                // within a unit below the integer one.
+                k = (int) Math.ceil(iterData[dst]);
+                if (k < params.maxIters) {
+                    conPts++;
+                }
+                maxIter = Math.max(maxIter, k);
+                minIter = Math.min(minIter, k);
+                totalIters += k;
+                copied++;
+            }
+            if (from < end) {
+                iterateRegion(new Rectangle(i, from, 1, end - from), st);
             }
         }
-        synchronized (stats) {
-        stats.convergentPoints += convCount;
-        if (stats.maxIterations < maxIterationCount) {
-            stats.maxIterations = maxIterationCount;
+        if (copied > 0) {
+            st.add(conPts, 0, minIter, maxIter, totalIters);
         }
-        if (stats.minIterations > minIterationCount) {
-            stats.minIterations = minIterationCount;
+    }
+
+    /*
+     * Fills region, the session's tile t.
+     */
+    private static void restoreRegion(int t, Rectangle region) {
+        try {
+            session.readTile(t, iterData, distData);
+        } catch (IOException ex) {
+            Logger.getLogger(Engine.class.getName()).log(Level.SEVERE, null, ex);
+            if (!cancelled) {
+                cancelled = true;
+                handler.errorOccurred();
+            }
+            return;
         }
-        stats.meanIterations += totalIterationCount;
+        colourRegion(region);
+    }
+
+    private static void colourRegion(Rectangle region) {
+        boolean density = isOrbitRender(params);
+
+        for (int j = region.y; j < region.y + region.height; j++) {
+            for (int i = region.x; i < region.x + region.width; i++) {
+                int dataIdx = j * params.imgWidth + i;
+                buffer[dataIdx] = density ? densityColour(iterData[dataIdx]) : pixelColour(dataIdx);
+            }
         }
     }
 }
@@ -0,0 +1,148 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  JuliaKernel.java
+ *
+ *  The escape-time loop for z -> z^2 + c with a fixed c, started from the pixel's coordinate.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.Rectangle;
+
+/**
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class JuliaKernel extends Kernel {
+
+    private final double cR, cI;
+
+    public JuliaKernel(double cR, double cI) {
+        super(String.format("Julia (%.4G%+.4Gi)", cR, cI));
+        this.cR = cR;
+        this.cI = cI;
+    }
+
+    @Override
+    public String getSpec() {
+        return "julia:" + cR + ":" + cI;
+    }
+
+    @Override
+    boolean isConjugateSymmetric() {
+        return cI == 0;
+    }
+
+    @Override
+    void iterateRegion(Engine.Parameters p, Rectangle region, float[] iterData, Engine.Statistics stats) {
+        int k, maxIters = p.maxIters, convCount = 0, minIterationCount = maxIters, maxIterationCount = 1;
+        long totalIterationCount = 0;
+        double zR, cR = this.cR, aR, zI, cI = this.cI, aI, colR, colI, rowR, rowI, temp;
+
+        colR = p.colStepR;
+        colI = p.colStepI;
+        rowR = p.rowStepR;
+        rowI = p.rowStepI;
+        aR = p.originR;
+        aI = p.originI;
+        for (int i = 0; i < region.width; i++) {
+            for (int j = 0; j < region.height; j++) {
+                zR = aR + colR * (region.x + i) + rowR * (region.y + j);
+                zI = aI + colI * (region.x + i) + rowI * (region.y + j);
+                k = 0;
+
+                while (k < maxIters) {
+                    if (zR * zR + zI * zI > BAILOUT) {
+                        break;
+                    }
+
+                    temp = zR;
+                    zR = zR * zR - zI * zI + cR;
+                    zI = 2 * temp * zI + cI;
+                    k++;
+                }
+                if (k < maxIters) {
+                    convCount++;
+                }
+                if (k > maxIterationCount) {
+                    maxIterationCount = k;
+                }
+                if (k < minIterationCount) {
+                    minIterationCount = k;
+                }
+                totalIterationCount += k;
+                iterData[(region.y + j) * p.imgWidth + region.x + i] = smoothIterations(k, maxIters, zR, zI);
+            }
+        }
+        stats.add(convCount, 0, minIterationCount, maxIterationCount, totalIterationCount);
+    }
+
+    @Override
+    float iteratePoint(double zR, double zI, int maxIters, double[] dist) {
+        int k = 0;
+        double temp;
+
+        while (k < maxIters) {
+            if (zR * zR + zI * zI > BAILOUT) {
+                break;
+            }
+
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            k++;
+        }
+        if (dist != null) {
+            dist[0] = Double.POSITIVE_INFINITY;
+        }
+        return smoothIterations(k, maxIters, zR, zI);
+    }
+
+    @Override
+    float resumePoint(double pR, double pI, double[] z, int k, int maxIters) {
+        double zR = z[0], zI = z[1], temp;
+
+        while (k < maxIters) {
+            if (zR * zR + zI * zI > BAILOUT) {
+                break;
+            }
+
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            k++;
+        }
+        z[0] = zR;
+        z[1] = zI;
+        return smoothIterations(k, maxIters, zR, zI);
+    }
+
+    @Override
+    boolean hasOrbits() {
+        return true;
+    }
+
+    @Override
+    int traceOrbit(double zR, double zI, int maxIters, double[] orbit) {
+        int k = 0;
+        double temp;
+
+        while (k < maxIters) {
+            if (zR * zR + zI * zI > BAILOUT) {
+                break;
+            }
+
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            orbit[2 * k] = zR;
+            orbit[2 * k + 1] = zI;
+            k++;
+        }
+        return k;
+    }
+}
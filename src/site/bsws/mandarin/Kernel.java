@@ -0,0 +1,161 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  Kernel.java
+ *
+ *  Base class for the escape-time loops of the fractals Engine can render.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Each subclass carries its own copy of the region loop, so the loop is compiled for exactly one
+ * formula. A per-pixel or per-iteration call through Kernel would stop being inlined as soon as a
+ * second fractal had been rendered.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public abstract class Kernel {
+
+    static final double BAILOUT = 25;
+    private final String name;
+
+    protected Kernel(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns a string that identifies the kernel and its constants, and from which forSpec can
+     * recreate it.
+     */
+    public abstract String getSpec();
+
+    public static Kernel forSpec(String spec) {
+        String[] parts = spec.split(":");
+
+        switch (parts[0]) {
+            case "mandelbrot":
+            case "mandelbrot-unrolled":
+                // Sessions and jobs may still name the unrolled kernel that MandelbrotKernel absorbed.
+                return MandelbrotKernel.INSTANCE;
+            case "mandelbrot-float":
+                return MandelbrotFloatKernel.INSTANCE;
+            case "burning-ship":
+                return BurningShipKernel.INSTANCE;
+            case "julia":
+                if (parts.length == 3) {
+                    return new JuliaKernel(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                }
+                break;
+            case "multibrot":
+                if (parts.length == 2) {
+                    return new MultibrotKernel(Integer.parseInt(parts[1]));
+                }
+                break;
+        }
+        throw new IllegalArgumentException("Unknown kernel: " + spec);
+    }
+
+    /**
+     * Iterates every pixel of the region, storing the smooth iteration counts in iterData and
+     * adding the region's totals to stats.
+     */
+    abstract void iterateRegion(Engine.Parameters p, Rectangle region, float[] iterData,
+            Engine.Statistics stats);
+
+    /**
+     * Iterates a single point and returns its smooth iteration count. If dist is not null, its first
+     * element receives the distance estimate in plane units, or infinity if there is none.
+     */
+    abstract float iteratePoint(double cR, double cI, int maxIters, double[] dist);
+
+    /**
+     * Carries the orbit of point on from z, its iterate after k iterations, to its escape or to
+     * maxIters, leaves the last iterate in z and returns the smooth iteration count, which is
+     * iteratePoint's. z starts out as the point itself. Kernels that cannot resume start over.
+     */
+    float resumePoint(double pR, double pI, double[] z, int k, int maxIters) {
+        return iteratePoint(pR, pI, maxIters, null);
+    }
+
+    boolean hasDistanceEstimate() {
+        return false;
+    }
+
+    /**
+     * Returns the relative rounding error of the kernel's arithmetic.
+     */
+    double getEpsilon() {
+        return Math.ulp(1.0);
+    }
+
+    /**
+     * Returns a costlier kernel for the same formula with a smaller epsilon, or null if there is
+     * none.
+     */
+    Kernel getHigherPrecision() {
+        return null;
+    }
+
+    /**
+     * Like iterateRegion, but also stores the exterior distance estimate (in pixels) in distData and
+     * may interpolate pixels that the estimate shows to lie outside the set. Kernels without an
+     * estimate iterate the region as usual and store infinity, which shades as no boundary.
+     */
+    void iterateRegionEstimated(Engine.Parameters p, Rectangle region, float[] iterData,
+            float[] distData, Engine.Statistics stats) {
+        iterateRegion(p, region, iterData, stats);
+        for (int j = region.y; j < region.y + region.height; j++) {
+            Arrays.fill(distData, j * p.imgWidth + region.x, j * p.imgWidth + region.x + region.width,
+                    Float.POSITIVE_INFINITY);
+        }
+    }
+
+    /**
+     * Returns true if conjugating the starting point conjugates every iterate, so that points
+     * mirrored in the real axis get identical results.
+     */
+    boolean isConjugateSymmetric() {
+        return false;
+    }
+
+    boolean hasOrbits() {
+        return false;
+    }
+
+    /**
+     * Stores each iterate of the point in orbit, real and imaginary parts interleaved, and returns
+     * the number of iterations, which is maxIters if the orbit stayed bounded. orbit must hold
+     * 2 * maxIters values.
+     */
+    abstract int traceOrbit(double pR, double pI, int maxIters, double[] orbit);
+
+    /**
+     * Returns true if c is known to lie in the set without iterating; false means unknown.
+     */
+    boolean isKnownInterior(double cR, double cI) {
+        return false;
+    }
+
+    static float smoothIterations(int iters, int maxIters, double zR, double zI) {
+        if (iters == maxIters) {
+            return iters;
+        }
+        return (float) (iters - Math.log(Math.log(Math.sqrt(zR * zR + zI * zI))));
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
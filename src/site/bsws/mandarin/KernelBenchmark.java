@@ -0,0 +1,207 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  KernelBenchmark.java
+ *
+ *  Times kernels' region loops against the plain loops they replace, on one thread.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.Rectangle;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Each view of a fixed corpus is iterated as one region on the calling thread, once by the view's
+ * kernel and once by the reference loop: for Mandelbrot, the loop the engine ran inline before
+ * kernels were split out, and for Multibrot, the general loop that multiplies by z power - 1
+ * times. A run keeps the fastest of REPEATS, after one untimed run of each to compile the code.
+ * For every view, the CSV file gets a line with both times, the kernel's speedup over the
+ * reference, the number of pixels whose values differ and the largest difference. Mandelbrot
+ * should match exactly; the Multibrot fast paths round differently, so a few pixels near the
+ * boundary may differ. The summary gives the same per kernel.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class KernelBenchmark {
+
+    private static final int REPEATS = 5;
+
+    private KernelBenchmark() {
+    }
+
+    private static List<Engine.Parameters> corpus() {
+        List<Engine.Parameters> views = new ArrayList<>();
+        EnumSet<Engine.Parameters.Option> none = EnumSet.noneOf(Engine.Parameters.Option.class);
+        Engine.Parameters.ColouringMethod regular = Engine.Parameters.ColouringMethod.REGULAR;
+
+        views.add(new Engine.Parameters(-2.5, 1, -1.3125, 1.3125, 1280, 960, 500, regular,
+                MandelbrotKernel.INSTANCE, none));
+        views.add(new Engine.Parameters(-0.7530, -0.7390, 0.0935, 0.1040, 960, 720, 2000, regular,
+                MandelbrotKernel.INSTANCE, none));
+        for (int power = 3; power <= 5; power++) {
+            views.add(new Engine.Parameters(-1.6, 1.6, -1.2, 1.2, 1280, 960, 500, regular,
+                    new MultibrotKernel(power), none));
+        }
+        views.add(new Engine.Parameters(0.2, 0.6, 0.6, 0.9, 960, 720, 2000, regular,
+                new MultibrotKernel(3), none));
+        views.add(new Engine.Parameters(0.6, 0.9, 0.5, 0.8, 960, 720, 2000, regular,
+                new MultibrotKernel(4), none));
+        return views;
+    }
+
+    /*
+     * Iterates every pixel of p into out as the engine did before kernels had their own loops.
+     */
+    private static void referenceMandelbrot(Engine.Parameters p, float[] out) {
+        int k;
+        double zR, zI, cR, cI, temp;
+
+        for (int i = 0; i < p.imgWidth; i++) {
+            for (int j = 0; j < p.imgHeight; j++) {
+                zR = cR = p.originR + p.colStepR * i + p.rowStepR * j;
+                zI = cI = p.originI + p.colStepI * i + p.rowStepI * j;
+                k = 0;
+
+                while (k < p.maxIters) {
+                    if (zR * zR + zI * zI > Kernel.BAILOUT) {
+                        break;
+                    }
+
+                    temp = zR;
+                    zR = zR * zR - zI * zI + cR;
+                    zI = 2 * temp * zI + cI;
+                    k++;
+                }
+                out[j * p.imgWidth + i] = Kernel.smoothIterations(k, p.maxIters, zR, zI);
+            }
+        }
+    }
+
+    /*
+     * Iterates every pixel of p into out with the general Multibrot loop.
+     */
+    private static void referenceMultibrot(Engine.Parameters p, int power, float[] out) {
+        int k;
+        double logPower = Math.log(power), zR, zI, cR, cI, wR, wI, temp;
+
+        for (int i = 0; i < p.imgWidth; i++) {
+            for (int j = 0; j < p.imgHeight; j++) {
+                zR = cR = p.originR + p.colStepR * i + p.rowStepR * j;
+                zI = cI = p.originI + p.colStepI * i + p.rowStepI * j;
+                k = 0;
+
+                while (k < p.maxIters) {
+                    if (zR * zR + zI * zI > Kernel.BAILOUT) {
+                        break;
+                    }
+
+                    wR = zR;
+                    wI = zI;
+                    for (int n = 1; n < power; n++) {
+                        temp = wR;
+                        wR = wR * zR - wI * zI;
+                        wI = temp * zI + wI * zR;
+                    }
+                    zR = wR + cR;
+                    zI = wI + cI;
+                    k++;
+                }
+                out[j * p.imgWidth + i] = k == p.maxIters ? k
+                        : (float) (k - Math.log(Math.log(Math.sqrt(zR * zR + zI * zI))) / logPower);
+            }
+        }
+    }
+
+    /*
+     * Returns the best time in milliseconds of REPEATS runs of the reference, or of the kernel,
+     * over p, leaving the last run's values in out.
+     */
+    private static double time(Engine.Parameters p, boolean kernel, float[] out) {
+        Rectangle all = new Rectangle(p.imgWidth, p.imgHeight);
+        String spec[] = p.kernel.getSpec().split(":");
+        double best = Double.POSITIVE_INFINITY;
+
+        for (int n = 0; n <= REPEATS; n++) {
+            long start = System.nanoTime();
+            if (kernel) {
+                p.kernel.iterateRegion(p, all, out, new Engine.Statistics(p.maxIters, 0, 0, 0, 0));
+            } else if (spec[0].equals("multibrot")) {
+                referenceMultibrot(p, Integer.parseInt(spec[1]), out);
+            } else {
+                referenceMandelbrot(p, out);
+            }
+            if (n > 0) {
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param args the CSV file to write
+     */
+    public static void main(String args[]) {
+        List<Engine.Parameters> views = corpus();
+        Map<String, double[]> totals = new LinkedHashMap<>();
+
+        if (args.length != 1) {
+            System.err.println("Usage: KernelBenchmark <CSV file>");
+            System.exit(2);
+        }
+        try (PrintWriter csv = new PrintWriter(new FileWriter(args[0]))) {
+            csv.println("view,kernel,width,height,max_iterations,reference_ms,kernel_ms,speedup,"
+                    + "differing_pixels,max_difference");
+            for (int v = 0; v < views.size(); v++) {
+                Engine.Parameters p = views.get(v);
+                float expected[] = new float[p.imgWidth * p.imgHeight],
+                        actual[] = new float[expected.length];
+                double ref = time(p, false, expected), kern = time(p, true, actual), worst = 0, sums[];
+                int differing = 0;
+
+                for (int idx = 0; idx < expected.length; idx++) {
+                    if (Float.floatToIntBits(expected[idx]) != Float.floatToIntBits(actual[idx])) {
+                        differing++;
+                        worst = Math.max(worst, Math.abs(expected[idx] - actual[idx]));
+                    }
+                }
+                sums = totals.get(p.kernel.getName());
+                if (sums == null) {
+                    totals.put(p.kernel.getName(), sums = new double[4]);
+                }
+                sums[0] += ref;
+                sums[1] += kern;
+                sums[2] += differing;
+                sums[3] = Math.max(sums[3], worst);
+                csv.printf("%d,%s,%d,%d,%d,%.2f,%.2f,%.3f,%d,%.6g%n", v, p.kernel.getSpec(), p.imgWidth,
+                        p.imgHeight, p.maxIters, ref, kern, ref / kern, differing, worst);
+                System.out.printf("View %d (%s, %dx%d, %d iterations): reference %.1f ms, kernel %.1f ms%n",
+                        v, p.kernel.getName(), p.imgWidth, p.imgHeight, p.maxIters, ref, kern);
+            }
+            System.out.println();
+            System.out.printf("%-20s %15s %12s %8s %10s %12s%n", "Kernel", "Reference (ms)",
+                    "Kernel (ms)", "Speedup", "Differing", "Max diff");
+            for (Map.Entry<String, double[]> e : totals.entrySet()) {
+                double sums[] = e.getValue();
+                System.out.printf("%-20s %15.1f %12.1f %8.2f %10d %12.3g%n", e.getKey(), sums[0], sums[1],
+                        sums[0] / sums[1], (long) sums[2], sums[3]);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(KernelBenchmark.class.getName()).log(Level.SEVERE, null, ex);
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
@@ -16,10 +16,12 @@ import java.awt.Graphics;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
+import java.util.EnumSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JFileChooser;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JProgressBar;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
@@ -65,17 +67,35 @@ public class Main extends javax.swing.JFrame implements SettingsPanel.Listener {
         menuBar = new javax.swing.JMenuBar();
         fileMenu = new javax.swing.JMenu();
         saveBufferMenuItem = new javax.swing.JMenuItem();
+        exportImageMenuItem = new javax.swing.JMenuItem();
         editMenu = new javax.swing.JMenu();
         rotateImageMenu = new javax.swing.JMenu();
         rotateClockwiseMenuItem = new javax.swing.JMenuItem();
         rotateAnticlockwiseMenuItem = new javax.swing.JMenuItem();
         resetRenderingRegionMenuItem = new javax.swing.JMenuItem();
         redrawImageMenuItem = new javax.swing.JMenuItem();
+        fractalMenu = new javax.swing.JMenu();
+        mandelbrotMenuItem = new javax.swing.JRadioButtonMenuItem();
+        juliaMenuItem = new javax.swing.JRadioButtonMenuItem();
+        burningShipMenuItem = new javax.swing.JRadioButtonMenuItem();
+        multibrotMenuItem = new javax.swing.JRadioButtonMenuItem();
         jMenu1 = new javax.swing.JMenu();
         mouseZoomSpeedMenu = new javax.swing.JMenu();
         jRadioButtonMenuItem5 = new javax.swing.JRadioButtonMenuItem();
         jRadioButtonMenuItem6 = new javax.swing.JRadioButtonMenuItem();
         jRadioButtonMenuItem8 = new javax.swing.JRadioButtonMenuItem();
+        antiAliasingMenuItem = new javax.swing.JCheckBoxMenuItem();
+        distanceEstimationMenuItem = new javax.swing.JCheckBoxMenuItem();
+        automaticPrecisionMenuItem = new javax.swing.JCheckBoxMenuItem();
+        interactiveResolutionMenuItem = new javax.swing.JCheckBoxMenuItem();
+        saveSessionMenuItem = new javax.swing.JMenuItem();
+        openSessionMenuItem = new javax.swing.JMenuItem();
+        orbitDensityMenuItem = new javax.swing.JCheckBoxMenuItem();
+        boundedOrbitsMenuItem = new javax.swing.JCheckBoxMenuItem();
+        orbitCheckpointMenuItem = new javax.swing.JMenuItem();
+        prefetchViewsMenuItem = new javax.swing.JCheckBoxMenuItem();
+        tileCacheMenuItem = new javax.swing.JMenuItem();
+        renderSelectionMenuItem = new javax.swing.JMenuItem();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
         setTitle("Mandarin");
@@ -130,6 +150,9 @@ public class Main extends javax.swing.JFrame implements SettingsPanel.Listener {
             public void mouseDragged(java.awt.event.MouseEvent evt) {
                 imagePanelMouseDragged(evt);
             }
+            public void mouseMoved(java.awt.event.MouseEvent evt) {
+                imagePanelMouseMoved(evt);
+            }
         });
 
         javax.swing.GroupLayout imagePanelLayout = new javax.swing.GroupLayout(imagePanel);
@@ -154,6 +177,46 @@ public class Main extends javax.swing.JFrame implements SettingsPanel.Listener {
         });
         fileMenu.add(saveBufferMenuItem);
 
+        exportImageMenuItem.setText("Export Image At Size...");
+        exportImageMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                exportImageMenuItemActionPerformed(evt);
+            }
+        });
+        fileMenu.add(exportImageMenuItem);
+
+        saveSessionMenuItem.setText("Save Session...");
+        saveSessionMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                saveSessionMenuItemActionPerformed(evt);
+            }
+        });
+        fileMenu.add(saveSessionMenuItem);
+
+        openSessionMenuItem.setText("Open Session...");
+        openSessionMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                openSessionMenuItemActionPerformed(evt);
+            }
+        });
+        fileMenu.add(openSessionMenuItem);
+
+        orbitCheckpointMenuItem.setText("Orbit Checkpoint...");
+        orbitCheckpointMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                orbitCheckpointMenuItemActionPerformed(evt);
+            }
+        });
+        fileMenu.add(orbitCheckpointMenuItem);
+
+        tileCacheMenuItem.setText("Tile Cache...");
+        tileCacheMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                tileCacheMenuItemActionPerformed(evt);
+            }
+        });
+        fileMenu.add(tileCacheMenuItem);
+
         menuBar.add(fileMenu);
 
         editMenu.setText("Edit");
@@ -198,8 +261,57 @@ public class Main extends javax.swing.JFrame implements SettingsPanel.Listener {
         });
         editMenu.add(redrawImageMenuItem);
 
+        renderSelectionMenuItem.setText("Render Selection in Detail");
+        renderSelectionMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                renderSelectionMenuItemActionPerformed(evt);
+            }
+        });
+        editMenu.add(renderSelectionMenuItem);
+
         menuBar.add(editMenu);
 
+        fractalMenu.setText("Fractal");
+
+        fractalButtonGroup.add(mandelbrotMenuItem);
+        mandelbrotMenuItem.setSelected(true);
+        mandelbrotMenuItem.setText("Mandelbrot");
+        mandelbrotMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                fractalRadioButtonActionPerformed(evt);
+            }
+        });
+        fractalMenu.add(mandelbrotMenuItem);
+
+        fractalButtonGroup.add(juliaMenuItem);
+        juliaMenuItem.setText("Julia");
+        juliaMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                fractalRadioButtonActionPerformed(evt);
+            }
+        });
+        fractalMenu.add(juliaMenuItem);
+
+        fractalButtonGroup.add(burningShipMenuItem);
+        burningShipMenuItem.setText("Burning Ship");
+        burningShipMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                fractalRadioButtonActionPerformed(evt);
+            }
+        });
+        fractalMenu.add(burningShipMenuItem);
+
+        fractalButtonGroup.add(multibrotMenuItem);
+        multibrotMenuItem.setText("Multibrot (z^3)");
+        multibrotMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                fractalRadioButtonActionPerformed(evt);
+            }
+        });
+        fractalMenu.add(multibrotMenuItem);
+
+        menuBar.add(fractalMenu);
+
         jMenu1.setText("Settings");
 
         mouseZoomSpeedMenu.setText("Mouse Zoom Speed");
@@ -234,6 +346,64 @@ public class Main extends javax.swing.JFrame implements SettingsPanel.Listener {
 
         jMenu1.add(mouseZoomSpeedMenu);
 
+        antiAliasingMenuItem.setText("Anti-aliasing");
+        antiAliasingMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                antiAliasingMenuItemActionPerformed(evt);
+            }
+        });
+        jMenu1.add(antiAliasingMenuItem);
+
+        distanceEstimationMenuItem.setText("Distance Estimation");
+        distanceEstimationMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                distanceEstimationMenuItemActionPerformed(evt);
+            }
+        });
+        jMenu1.add(distanceEstimationMenuItem);
+
+        automaticPrecisionMenuItem.setText("Automatic Precision");
+        automaticPrecisionMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                automaticPrecisionMenuItemActionPerformed(evt);
+            }
+        });
+        jMenu1.add(automaticPrecisionMenuItem);
+
+        interactiveResolutionMenuItem.setSelected(true);
+        interactiveResolutionMenuItem.setText("Interactive Resolution");
+        interactiveResolutionMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                interactiveResolutionMenuItemActionPerformed(evt);
+            }
+        });
+        jMenu1.add(interactiveResolutionMenuItem);
+
+        orbitDensityMenuItem.setText("Orbit Density");
+        orbitDensityMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                orbitDensityMenuItemActionPerformed(evt);
+            }
+        });
+        jMenu1.add(orbitDensityMenuItem);
+
+        boundedOrbitsMenuItem.setText("Bounded Orbits");
+        boundedOrbitsMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                boundedOrbitsMenuItemActionPerformed(evt);
+            }
+        });
+        jMenu1.add(boundedOrbitsMenuItem);
+
+        prefetchViewsMenuItem.setSelected(true);
+        prefetchViewsMenuItem.setText("Prefetch Views");
+        prefetchViewsMenuItem.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                prefetchViewsMenuItemActionPerformed(evt);
+            }
+        });
+        jMenu1.add(prefetchViewsMenuItem);
+
         menuBar.add(jMenu1);
 
         setJMenuBar(menuBar);
@@ -298,13 +468,17 @@ public class Main extends javax.swing.JFrame implements SettingsPanel.Listener {
 
 	}//GEN-LAST:event_imagePanelMouseDragged
 
+	private void imagePanelMouseMoved(java.awt.event.MouseEvent evt) {//GEN-FIRST:event_imagePanelMouseMoved
+            settingsPanel.setZoomTarget(evt.getPoint(), zoomFactor);
+	}//GEN-LAST:event_imagePanelMouseMoved
+
 	private void imagePanelComponentResized(java.awt.event.ComponentEvent evt) {//GEN-FIRST:event_imagePanelComponentResized
             settingsPanel.setOutputSize(imagePanel.getBounds());
             clearSelectionRectangle();
             Rectangle r = imagePanel.getBounds();
             r.setLocation(0, 0);
             settingsPanel.setSelectionRegion(r);
-            settingsPanel.startRendering();
+            settingsPanel.startDebouncedRendering();
 	}//GEN-LAST:event_imagePanelComponentResized
 
 	private void imagePanelMouseWheelMoved(java.awt.event.MouseWheelEvent evt) {//GEN-FIRST:event_imagePanelMouseWheelMoved
@@ -332,6 +506,24 @@ public class Main extends javax.swing.JFrame implements SettingsPanel.Listener {
             }
 	}//GEN-LAST:event_mouseSpeedRadioButtonActionPerformed
 
+    private void fractalRadioButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_fractalRadioButtonActionPerformed
+        switch (evt.getActionCommand()) {
+            case "Mandelbrot":
+                settingsPanel.setKernel(MandelbrotKernel.INSTANCE);
+                break;
+            case "Julia":
+                settingsPanel.setKernel(new JuliaKernel(-0.8, 0.156));
+                break;
+            case "Burning Ship":
+                settingsPanel.setKernel(BurningShipKernel.INSTANCE);
+                break;
+            case "Multibrot (z^3)":
+                settingsPanel.setKernel(new MultibrotKernel(3));
+                break;
+        }
+        settingsPanel.startRendering();
+    }//GEN-LAST:event_fractalRadioButtonActionPerformed
+
     private void saveBufferMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_saveBufferMenuItemActionPerformed
         JFileChooser fc;
 
@@ -339,16 +531,45 @@ public class Main extends javax.swing.JFrame implements SettingsPanel.Listener {
         fc.setDialogTitle("Save As...");
         if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
             settingsPanel.writeImageToFile(fc.getSelectedFile());
-            notificationAreaLabel.setText("Buffer saved to " + fc.getSelectedFile().getPath() + ".");
         }
     }//GEN-LAST:event_saveBufferMenuItemActionPerformed
 
+    private void exportImageMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_exportImageMenuItemActionPerformed
+        JFileChooser fc;
+        String size;
+        int width, height;
+
+        fc = new JFileChooser();
+        fc.setDialogTitle("Export As...");
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        size = JOptionPane.showInputDialog(this, "Width x height, in pixels:", "Export Image",
+                JOptionPane.QUESTION_MESSAGE);
+        if (size == null) {
+            return;
+        }
+        try {
+            String parts[] = size.trim().split("\\s*[xX]\\s*");
+            width = Integer.parseInt(parts[0]);
+            height = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+            width = height = 0;
+        }
+        if (width < 1 || height < 1) {
+            JOptionPane.showMessageDialog(this, "\"" + size + "\" is not a size such as 3840 x 2160.",
+                    "Export Image", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        settingsPanel.writeImageToFile(fc.getSelectedFile(), width, height);
+    }//GEN-LAST:event_exportImageMenuItemActionPerformed
+
     private void rotateClockwiseMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_rotateClockwiseMenuItemActionPerformed
-        settingsPanel.redrawImageRotated(Math.PI / 2);
+        settingsPanel.rotate(Math.PI / 2);
     }//GEN-LAST:event_rotateClockwiseMenuItemActionPerformed
 
     private void rotateAnticlockwiseMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_rotateAnticlockwiseMenuItemActionPerformed
-        settingsPanel.redrawImageRotated(-Math.PI / 2);
+        settingsPanel.rotate(-Math.PI / 2);
     }//GEN-LAST:event_rotateAnticlockwiseMenuItemActionPerformed
 
     private void resetRenderingRegionMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_resetRenderingRegionMenuItemActionPerformed
@@ -362,6 +583,83 @@ public class Main extends javax.swing.JFrame implements SettingsPanel.Listener {
 
     }//GEN-LAST:event_redrawImageMenuItemActionPerformed
 
+    private void antiAliasingMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_antiAliasingMenuItemActionPerformed
+        settingsPanel.setRenderOption(Engine.Parameters.Option.ANTI_ALIASING, antiAliasingMenuItem.isSelected());
+    }//GEN-LAST:event_antiAliasingMenuItemActionPerformed
+
+    private void distanceEstimationMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_distanceEstimationMenuItemActionPerformed
+        settingsPanel.setRenderOption(Engine.Parameters.Option.DISTANCE_ESTIMATION, distanceEstimationMenuItem.isSelected());
+    }//GEN-LAST:event_distanceEstimationMenuItemActionPerformed
+
+    private void automaticPrecisionMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_automaticPrecisionMenuItemActionPerformed
+        settingsPanel.setRenderOption(Engine.Parameters.Option.AUTOMATIC_PRECISION, automaticPrecisionMenuItem.isSelected());
+    }//GEN-LAST:event_automaticPrecisionMenuItemActionPerformed
+
+    private void interactiveResolutionMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_interactiveResolutionMenuItemActionPerformed
+        settingsPanel.setInteractiveResolution(interactiveResolutionMenuItem.isSelected());
+    }//GEN-LAST:event_interactiveResolutionMenuItemActionPerformed
+
+    private void saveSessionMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_saveSessionMenuItemActionPerformed
+        JFileChooser fc;
+
+        fc = new JFileChooser();
+        fc.setDialogTitle("Save Session As...");
+        if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            settingsPanel.writeSessionToFile(fc.getSelectedFile());
+        }
+    }//GEN-LAST:event_saveSessionMenuItemActionPerformed
+
+    private void openSessionMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_openSessionMenuItemActionPerformed
+        JFileChooser fc;
+
+        fc = new JFileChooser();
+        fc.setDialogTitle("Open Session");
+        if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            settingsPanel.readSessionFromFile(fc.getSelectedFile());
+        }
+    }//GEN-LAST:event_openSessionMenuItemActionPerformed
+
+    private void orbitDensityMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_orbitDensityMenuItemActionPerformed
+        settingsPanel.setRenderOption(Engine.Parameters.Option.ORBIT_DENSITY, orbitDensityMenuItem.isSelected());
+    }//GEN-LAST:event_orbitDensityMenuItemActionPerformed
+
+    private void boundedOrbitsMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_boundedOrbitsMenuItemActionPerformed
+        settingsPanel.setRenderOption(Engine.Parameters.Option.BOUNDED_ORBITS, boundedOrbitsMenuItem.isSelected());
+    }//GEN-LAST:event_boundedOrbitsMenuItemActionPerformed
+
+    private void orbitCheckpointMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_orbitCheckpointMenuItemActionPerformed
+        JFileChooser fc;
+
+        fc = new JFileChooser();
+        fc.setDialogTitle("Orbit Checkpoint");
+        if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            settingsPanel.setOrbitCheckpoint(fc.getSelectedFile());
+            notificationAreaLabel.setText("Orbit densities will be saved to " + fc.getSelectedFile().getPath() + ".");
+        }
+    }//GEN-LAST:event_orbitCheckpointMenuItemActionPerformed
+
+    private void prefetchViewsMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_prefetchViewsMenuItemActionPerformed
+        settingsPanel.setPrefetching(prefetchViewsMenuItem.isSelected());
+    }//GEN-LAST:event_prefetchViewsMenuItemActionPerformed
+
+    private void tileCacheMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_tileCacheMenuItemActionPerformed
+        JFileChooser fc;
+
+        fc = new JFileChooser();
+        fc.setDialogTitle("Tile Cache");
+        fc.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            settingsPanel.setTileCacheDirectory(fc.getSelectedFile());
+        }
+    }//GEN-LAST:event_tileCacheMenuItemActionPerformed
+
+    private void renderSelectionMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_renderSelectionMenuItemActionPerformed
+        Rectangle r = selRect;
+
+        clearSelectionRectangle();
+        settingsPanel.renderSelectionInDetail(r);
+    }//GEN-LAST:event_renderSelectionMenuItemActionPerformed
+
     /**
      * @param args the command line arguments
      */
@@ -384,27 +682,45 @@ public class Main extends javax.swing.JFrame implements SettingsPanel.Listener {
         });
     }
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JCheckBoxMenuItem antiAliasingMenuItem;
+    private javax.swing.JCheckBoxMenuItem automaticPrecisionMenuItem;
+    private javax.swing.JCheckBoxMenuItem boundedOrbitsMenuItem;
+    private javax.swing.JRadioButtonMenuItem burningShipMenuItem;
+    private javax.swing.JCheckBoxMenuItem distanceEstimationMenuItem;
     private javax.swing.JMenu editMenu;
+    private javax.swing.JMenuItem exportImageMenuItem;
     private javax.swing.JMenu fileMenu;
     private javax.swing.ButtonGroup fractalButtonGroup;
+    private javax.swing.JMenu fractalMenu;
     private javax.swing.JPanel imagePanel;
+    private javax.swing.JCheckBoxMenuItem interactiveResolutionMenuItem;
     private javax.swing.JMenu jMenu1;
     private javax.swing.JRadioButtonMenuItem jRadioButtonMenuItem5;
     private javax.swing.JRadioButtonMenuItem jRadioButtonMenuItem6;
     private javax.swing.JRadioButtonMenuItem jRadioButtonMenuItem8;
+    private javax.swing.JRadioButtonMenuItem juliaMenuItem;
+    private javax.swing.JRadioButtonMenuItem mandelbrotMenuItem;
     private javax.swing.JMenuBar menuBar;
     private javax.swing.ButtonGroup mouseSpeedButtonGroup;
     private javax.swing.JMenu mouseZoomSpeedMenu;
+    private javax.swing.JRadioButtonMenuItem multibrotMenuItem;
     private javax.swing.JLabel notificationAreaLabel;
     private javax.swing.JPanel notificationAreaPanel;
+    private javax.swing.JMenuItem openSessionMenuItem;
+    private javax.swing.JMenuItem orbitCheckpointMenuItem;
+    private javax.swing.JCheckBoxMenuItem orbitDensityMenuItem;
+    private javax.swing.JCheckBoxMenuItem prefetchViewsMenuItem;
     private javax.swing.JProgressBar progressBar;
     private javax.swing.JMenuItem redrawImageMenuItem;
+    private javax.swing.JMenuItem renderSelectionMenuItem;
     private javax.swing.JMenuItem resetRenderingRegionMenuItem;
     private javax.swing.JMenuItem rotateAnticlockwiseMenuItem;
     private javax.swing.JMenuItem rotateClockwiseMenuItem;
     private javax.swing.JMenu rotateImageMenu;
     private javax.swing.JMenuItem saveBufferMenuItem;
+    private javax.swing.JMenuItem saveSessionMenuItem;
     private site.bsws.mandarin.SettingsPanel settingsPanel;
+    private javax.swing.JMenuItem tileCacheMenuItem;
     // End of variables declaration//GEN-END:variables
 
     private void drawSelectionRectangle(Rectangle r) {
@@ -499,6 +815,29 @@ public class Main extends javax.swing.JFrame implements SettingsPanel.Listener {
         return notificationAreaLabel;
     }
 
+    @Override
+    public void sessionRestored(Kernel kernel, EnumSet<Engine.Parameters.Option> options) {
+        String spec = kernel.getSpec();
+
+        if (spec.equals("mandelbrot")) {
+            mandelbrotMenuItem.setSelected(true);
+        } else if (spec.startsWith("julia:")) {
+            juliaMenuItem.setSelected(true);
+        } else if (spec.equals("burning-ship")) {
+            burningShipMenuItem.setSelected(true);
+        } else if (spec.equals("multibrot:3")) {
+            multibrotMenuItem.setSelected(true);
+        } else {
+            // A kernel the menu does not offer, such as one named in a job file.
+            fractalButtonGroup.clearSelection();
+        }
+        antiAliasingMenuItem.setSelected(options.contains(Engine.Parameters.Option.ANTI_ALIASING));
+        distanceEstimationMenuItem.setSelected(options.contains(Engine.Parameters.Option.DISTANCE_ESTIMATION));
+        automaticPrecisionMenuItem.setSelected(options.contains(Engine.Parameters.Option.AUTOMATIC_PRECISION));
+        orbitDensityMenuItem.setSelected(options.contains(Engine.Parameters.Option.ORBIT_DENSITY));
+        boundedOrbitsMenuItem.setSelected(options.contains(Engine.Parameters.Option.BOUNDED_ORBITS));
+    }
+
     @Override
     public void clearSelectionRectangle() {
         if (!selRect.isEmpty()) {
@@ -0,0 +1,172 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  MandelbrotFloatKernel.java
+ *
+ *  The escape-time loop for z -> z^2 + c in single precision, for shallow zooms.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.Rectangle;
+
+/**
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class MandelbrotFloatKernel extends Kernel {
+
+    public static final MandelbrotFloatKernel INSTANCE = new MandelbrotFloatKernel();
+
+    private MandelbrotFloatKernel() {
+        super("Mandelbrot (float)");
+    }
+
+    @Override
+    public String getSpec() {
+        return "mandelbrot-float";
+    }
+
+    @Override
+    double getEpsilon() {
+        return Math.ulp(1.0f);
+    }
+
+    @Override
+    Kernel getHigherPrecision() {
+        return MandelbrotKernel.INSTANCE;
+    }
+
+    @Override
+    boolean isConjugateSymmetric() {
+        return true;
+    }
+
+    private static float smoothIterations(int iters, int maxIters, float zR, float zI) {
+        if (iters == maxIters) {
+            return iters;
+        }
+        return (float) (iters - Math.log(Math.log(Math.sqrt(zR * zR + zI * zI))));
+    }
+
+    @Override
+    void iterateRegion(Engine.Parameters p, Rectangle region, float[] iterData, Engine.Statistics stats) {
+        int k, maxIters = p.maxIters, convCount = 0, minIterationCount = maxIters, maxIterationCount = 1;
+        long totalIterationCount = 0;
+        float zR, cR, zI, cI, temp, bailout = (float) BAILOUT;
+        double aR, aI, colR, colI, rowR, rowI;
+
+        colR = p.colStepR;
+        colI = p.colStepI;
+        rowR = p.rowStepR;
+        rowI = p.rowStepI;
+        aR = p.originR;
+        aI = p.originI;
+        for (int i = 0; i < region.width; i++) {
+            for (int j = 0; j < region.height; j++) {
+                // The coordinates are formed in double and rounded once, so no error accumulates
+                // across the region.
+                zR = cR = (float) (aR + colR * (region.x + i) + rowR * (region.y + j));
+                zI = cI = (float) (aI + colI * (region.x + i) + rowI * (region.y + j));
+                k = 0;
+
+                while (k < maxIters) {
+                    if (zR * zR + zI * zI > bailout) {
+                        break;
+                    }
+
+                    temp = zR;
+                    zR = zR * zR - zI * zI + cR;
+                    zI = 2 * temp * zI + cI;
+                    k++;
+                }
+                if (k < maxIters) {
+                    convCount++;
+                }
+                if (k > maxIterationCount) {
+                    maxIterationCount = k;
+                }
+                if (k < minIterationCount) {
+                    minIterationCount = k;
+                }
+                totalIterationCount += k;
+                iterData[(region.y + j) * p.imgWidth + region.x + i] = smoothIterations(k, maxIters, zR, zI);
+            }
+        }
+        stats.add(convCount, 0, minIterationCount, maxIterationCount, totalIterationCount);
+    }
+
+    @Override
+    float iteratePoint(double pR, double pI, int maxIters, double[] dist) {
+        int k = 0;
+        float cR = (float) pR, cI = (float) pI, zR = cR, zI = cI, temp, bailout = (float) BAILOUT;
+
+        while (k < maxIters) {
+            if (zR * zR + zI * zI > bailout) {
+                break;
+            }
+
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            k++;
+        }
+        if (dist != null) {
+            dist[0] = Double.POSITIVE_INFINITY;
+        }
+        return smoothIterations(k, maxIters, zR, zI);
+    }
+
+    @Override
+    float resumePoint(double pR, double pI, double[] z, int k, int maxIters) {
+        float cR = (float) pR, cI = (float) pI, zR = (float) z[0], zI = (float) z[1], temp,
+                bailout = (float) BAILOUT;
+
+        while (k < maxIters) {
+            if (zR * zR + zI * zI > bailout) {
+                break;
+            }
+
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            k++;
+        }
+        z[0] = zR;
+        z[1] = zI;
+        return smoothIterations(k, maxIters, zR, zI);
+    }
+
+    @Override
+    boolean hasOrbits() {
+        return true;
+    }
+
+    @Override
+    int traceOrbit(double pR, double pI, int maxIters, double[] orbit) {
+        int k = 0;
+        float cR = (float) pR, cI = (float) pI, zR = cR, zI = cI, temp, bailout = (float) BAILOUT;
+
+        while (k < maxIters) {
+            if (zR * zR + zI * zI > bailout) {
+                break;
+            }
+
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            orbit[2 * k] = zR;
+            orbit[2 * k + 1] = zI;
+            k++;
+        }
+        return k;
+    }
+
+    @Override
+    boolean isKnownInterior(double cR, double cI) {
+        return MandelbrotKernel.INSTANCE.isKnownInterior(cR, cI);
+    }
+}
@@ -0,0 +1,434 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  MandelbrotKernel.java
+ *
+ *  The escape-time loop for z -> z^2 + c.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.Rectangle;
+
+/**
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class MandelbrotKernel extends Kernel {
+
+    public static final MandelbrotKernel INSTANCE = new MandelbrotKernel();
+    // Only discs at least DE_MIN_SKIP pixels in radius are filled; smaller skips don't pay for
+    // themselves.
+    private static final int DE_MIN_SKIP = 2;
+    private static final int BLOCK = 8;
+
+    private MandelbrotKernel() {
+        super("Mandelbrot");
+    }
+
+    @Override
+    public String getSpec() {
+        return "mandelbrot";
+    }
+
+    @Override
+    boolean isConjugateSymmetric() {
+        return true;
+    }
+
+    /*
+     * Orbits are advanced BLOCK iterations at a time from a saved state, and only the last of them
+     * is checked against the bailout. Once |z| exceeds the bailout radius, which is above both 2
+     * and |c| for any c that survives the first check, it only grows, so a block that ends inside
+     * the radius never left it. A block that ends outside it, or in overflow, is rolled back and
+     * stepped through one iteration at a time, so the escape iteration and final z are exactly
+     * those of the plain loop.
+     *
+     * Pixels are taken two rows at a time and their orbits advanced in the same blocks, which gives
+     * the processor two independent chains of multiplications to overlap. Once either escapes, or
+     * within BLOCK of the limit, each orbit is finished on its own by finish.
+     */
+    @Override
+    void iterateRegion(Engine.Parameters p, Rectangle region, float[] iterData, Engine.Statistics stats) {
+        int k, kA, kB, maxIters = p.maxIters, blockEnd = maxIters - BLOCK, convCount = 0,
+                minIterationCount = maxIters, maxIterationCount = 1, imgWidth = p.imgWidth;
+        long totalIterationCount = 0;
+        double zRA, zIA, cRA, cIA, zRB, zIB, cRB, cIB, aR, aI, colR, colI, rowR, rowI, tempA, tempB,
+                savedRA, savedIA, savedRB, savedIB, zA[] = new double[2], zB[] = new double[2];
+        boolean startedA, startedB, outA, outB;
+
+        colR = p.colStepR;
+        colI = p.colStepI;
+        rowR = p.rowStepR;
+        rowI = p.rowStepI;
+        aR = p.originR;
+        aI = p.originI;
+        for (int i = 0; i < region.width; i++) {
+            for (int j = 0; j < region.height; j += 2) {
+                boolean paired = j + 1 < region.height;
+
+                zRA = cRA = aR + colR * (region.x + i) + rowR * (region.y + j);
+                zIA = cIA = aI + colI * (region.x + i) + rowI * (region.y + j);
+                zRB = cRB = aR + colR * (region.x + i) + rowR * (region.y + j + 1);
+                zIB = cIB = aI + colI * (region.x + i) + rowI * (region.y + j + 1);
+                k = 0;
+                startedA = zRA * zRA + zIA * zIA <= BAILOUT;
+                startedB = paired && zRB * zRB + zIB * zIB <= BAILOUT;
+                outA = !startedA;
+                outB = !startedB;
+
+                // Written !(... <= BAILOUT) so that a block that overflowed to NaN also counts as
+                // escaped.
+                while (!outA && !outB && k <= blockEnd) {
+                    savedRA = zRA;
+                    savedIA = zIA;
+                    savedRB = zRB;
+                    savedIB = zIB;
+                    tempA = zRA;
+                    zRA = zRA * zRA - zIA * zIA + cRA;
+                    zIA = 2 * tempA * zIA + cIA;
+                    tempB = zRB;
+                    zRB = zRB * zRB - zIB * zIB + cRB;
+                    zIB = 2 * tempB * zIB + cIB;
+                    tempA = zRA;
+                    zRA = zRA * zRA - zIA * zIA + cRA;
+                    zIA = 2 * tempA * zIA + cIA;
+                    tempB = zRB;
+                    zRB = zRB * zRB - zIB * zIB + cRB;
+                    zIB = 2 * tempB * zIB + cIB;
+                    tempA = zRA;
+                    zRA = zRA * zRA - zIA * zIA + cRA;
+                    zIA = 2 * tempA * zIA + cIA;
+                    tempB = zRB;
+                    zRB = zRB * zRB - zIB * zIB + cRB;
+                    zIB = 2 * tempB * zIB + cIB;
+                    tempA = zRA;
+                    zRA = zRA * zRA - zIA * zIA + cRA;
+                    zIA = 2 * tempA * zIA + cIA;
+                    tempB = zRB;
+                    zRB = zRB * zRB - zIB * zIB + cRB;
+                    zIB = 2 * tempB * zIB + cIB;
+                    tempA = zRA;
+                    zRA = zRA * zRA - zIA * zIA + cRA;
+                    zIA = 2 * tempA * zIA + cIA;
+                    tempB = zRB;
+                    zRB = zRB * zRB - zIB * zIB + cRB;
+                    zIB = 2 * tempB * zIB + cIB;
+                    tempA = zRA;
+                    zRA = zRA * zRA - zIA * zIA + cRA;
+                    zIA = 2 * tempA * zIA + cIA;
+                    tempB = zRB;
+                    zRB = zRB * zRB - zIB * zIB + cRB;
+                    zIB = 2 * tempB * zIB + cIB;
+                    tempA = zRA;
+                    zRA = zRA * zRA - zIA * zIA + cRA;
+                    zIA = 2 * tempA * zIA + cIA;
+                    tempB = zRB;
+                    zRB = zRB * zRB - zIB * zIB + cRB;
+                    zIB = 2 * tempB * zIB + cIB;
+                    tempA = zRA;
+                    zRA = zRA * zRA - zIA * zIA + cRA;
+                    zIA = 2 * tempA * zIA + cIA;
+                    tempB = zRB;
+                    zRB = zRB * zRB - zIB * zIB + cRB;
+                    zIB = 2 * tempB * zIB + cIB;
+                    outA = !(zRA * zRA + zIA * zIA <= BAILOUT);
+                    outB = !(zRB * zRB + zIB * zIB <= BAILOUT);
+                    if (outA || outB) {
+                        zRA = savedRA;
+                        zIA = savedIA;
+                        zRB = savedRB;
+                        zIB = savedIB;
+                        break;
+                    }
+                    k += BLOCK;
+                }
+                zA[0] = zRA;
+                zA[1] = zIA;
+                kA = !startedA ? 0 : finish(zA, cRA, cIA, k, maxIters, outA);
+                if (kA < maxIters) {
+                    convCount++;
+                }
+                maxIterationCount = Math.max(maxIterationCount, kA);
+                minIterationCount = Math.min(minIterationCount, kA);
+                totalIterationCount += kA;
+                iterData[(region.y + j) * imgWidth + region.x + i] = smoothIterations(kA, maxIters, zA[0], zA[1]);
+                if (!paired) {
+                    continue;
+                }
+                zB[0] = zRB;
+                zB[1] = zIB;
+                kB = !startedB ? 0 : finish(zB, cRB, cIB, k, maxIters, outB);
+                if (kB < maxIters) {
+                    convCount++;
+                }
+                maxIterationCount = Math.max(maxIterationCount, kB);
+                minIterationCount = Math.min(minIterationCount, kB);
+                totalIterationCount += kB;
+                iterData[(region.y + j + 1) * imgWidth + region.x + i] = smoothIterations(kB, maxIters, zB[0], zB[1]);
+            }
+        }
+        stats.add(convCount, 0, minIterationCount, maxIterationCount, totalIterationCount);
+    }
+
+    /*
+     * Carries the orbit at z, after k iterations and inside the bailout radius, on to its escape or
+     * to maxIters; z is left holding the last iterate. If escaping is set, the orbit is known to
+     * escape within BLOCK iterations and is stepped through at once.
+     */
+    private static int finish(double[] z, double cR, double cI, int k, int maxIters, boolean escaping) {
+        int blockEnd = maxIters - BLOCK;
+        double zR = z[0], zI = z[1], savedR, savedI, temp;
+
+        while (!escaping && k <= blockEnd) {
+            savedR = zR;
+            savedI = zI;
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            if (!(zR * zR + zI * zI <= BAILOUT)) {
+                zR = savedR;
+                zI = savedI;
+                break;
+            }
+            k += BLOCK;
+        }
+        while (k < maxIters) {
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            k++;
+            if (zR * zR + zI * zI > BAILOUT) {
+                break;
+            }
+        }
+        z[0] = zR;
+        z[1] = zI;
+        return k;
+    }
+
+    @Override
+    float iteratePoint(double cR, double cI, int maxIters, double[] dist) {
+        int k = 0;
+        double zR = cR, zI = cI, dzR = 1, dzI = 0, temp;
+
+        while (k < maxIters) {
+            if (zR * zR + zI * zI > BAILOUT) {
+                break;
+            }
+
+            temp = 2 * (zR * dzR - zI * dzI) + 1;
+            dzI = 2 * (zR * dzI + zI * dzR);
+            dzR = temp;
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            k++;
+        }
+        if (dist != null) {
+            dist[0] = k < maxIters ? distanceEstimate(zR, zI, dzR, dzI) : Double.POSITIVE_INFINITY;
+        }
+        return smoothIterations(k, maxIters, zR, zI);
+    }
+
+    @Override
+    float resumePoint(double cR, double cI, double[] z, int k, int maxIters) {
+        double zR = z[0], zI = z[1], temp;
+
+        while (k < maxIters) {
+            if (zR * zR + zI * zI > BAILOUT) {
+                break;
+            }
+
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            k++;
+        }
+        z[0] = zR;
+        z[1] = zI;
+        return smoothIterations(k, maxIters, zR, zI);
+    }
+
+    @Override
+    boolean hasDistanceEstimate() {
+        return true;
+    }
+
+    /*
+     * Returns the estimate 2|z|ln|z|/|dz/dc| of the distance to the set. By the Koebe quarter
+     * theorem the disc of a quarter of this radius lies entirely outside the set.
+     */
+    private static double distanceEstimate(double zR, double zI, double dzR, double dzI) {
+        double zMod = Math.sqrt(zR * zR + zI * zI);
+
+        return 2 * zMod * Math.log(zMod) / Math.sqrt(dzR * dzR + dzI * dzI);
+    }
+
+    /*
+     * Linearly interpolates the pixels strictly between rows y0 and y1 of column x, both of which
+     * have been computed and lie outside the set. Returns the sum of the interpolated iteration
+     * counts.
+     */
+    private static int fillColumn(int imgWidth, float[] iterData, float[] distData, int x, int y0,
+            int y1, int k0, int k1) {
+        int idx0 = y0 * imgWidth + x, idx1 = y1 * imgWidth + x, sum = 0;
+        float v0 = iterData[idx0], v1 = iterData[idx1], d0 = distData[idx0], d1 = distData[idx1];
+
+        for (int j = y0 + 1; j < y1; j++) {
+            int dataIdx = j * imgWidth + x;
+            float t = (j - y0) / (float) (y1 - y0);
+            iterData[dataIdx] = v0 + t * (v1 - v0);
+            distData[dataIdx] = d0 + t * (d1 - d0);
+            sum += Math.round(k0 + t * (k1 - k0));
+        }
+        return sum;
+    }
+
+    /*
+     * Walks each column of the region tracking dz/dc alongside z. After an exterior pixel whose
+     * quarter-radius disc spans at least DE_MIN_SKIP pixels, the column jumps to the last pixel
+     * inside the disc and the pixels in between are interpolated. Should that pixel turn out to be
+     * interior (the estimate is only asymptotically exact), the jumped-over pixels are computed
+     * after all.
+     */
+    @Override
+    void iterateRegionEstimated(Engine.Parameters p, Rectangle region, float[] iterData,
+            float[] distData, Engine.Statistics stats) {
+        int k, maxIters = p.maxIters, convCount = 0, minIterationCount = maxIters,
+                maxIterationCount = 1, estCount = 0, skip, from, fromK = 0, exactUntil;
+        long totalIterationCount = 0;
+        double zR, cR, aR, zI, cI, aI, dzR, dzI, colR, colI, rowR, rowI, pixelSize, temp;
+
+        colR = p.colStepR;
+        colI = p.colStepI;
+        rowR = p.rowStepR;
+        rowI = p.rowStepI;
+        pixelSize = Math.max(p.planeXUnit, p.planeYUnit);
+        aR = p.originR;
+        aI = p.originI;
+        for (int i = 0; i < region.width; i++) {
+            from = -1;
+            exactUntil = 0;
+            for (int j = 0; j < region.height; j++) {
+                zR = cR = aR + colR * (region.x + i) + rowR * (region.y + j);
+                zI = cI = aI + colI * (region.x + i) + rowI * (region.y + j);
+                dzR = 1;
+                dzI = 0;
+                k = 0;
+
+                while (k < maxIters) {
+                    if (zR * zR + zI * zI > BAILOUT) {
+                        break;
+                    }
+
+                    temp = 2 * (zR * dzR - zI * dzI) + 1;
+                    dzI = 2 * (zR * dzI + zI * dzR);
+                    dzR = temp;
+                    temp = zR;
+                    zR = zR * zR - zI * zI + cR;
+                    zI = 2 * temp * zI + cI;
+                    k++;
+                }
+                if (k < maxIters) {
+                    convCount++;
+                }
+                if (k > maxIterationCount) {
+                    maxIterationCount = k;
+                }
+                if (k < minIterationCount) {
+                    minIterationCount = k;
+                }
+                totalIterationCount += k;
+                int dataIdx = (region.y + j) * p.imgWidth + region.x + i;
+                iterData[dataIdx] = smoothIterations(k, maxIters, zR, zI);
+                distData[dataIdx] = k < maxIters ? (float) (distanceEstimate(zR, zI, dzR, dzI) / pixelSize) : 0;
+
+                if (from >= 0) {
+                    if (k < maxIters) {
+                        // Interpolated values lie between their endpoints', so the extremes are unchanged.
+                        totalIterationCount += fillColumn(p.imgWidth, iterData, distData, region.x + i,
+                                region.y + from, region.y + j, fromK, k);
+                        convCount += j - from - 1;
+                        estCount += j - from - 1;
+                        from = -1;
+                    } else {
+                        totalIterationCount -= k;
+                        exactUntil = j + 1;
+                        j = from;
+                        from = -1;
+                        continue;
+                    }
+                }
+                if (k < maxIters && j >= exactUntil) {
+                    skip = Math.min((int) (distData[dataIdx] / 4), region.height - 1 - j);
+                    if (skip >= DE_MIN_SKIP) {
+                        from = j;
+                        fromK = k;
+                        j += skip - 1;
+                    }
+                }
+            }
+        }
+        stats.add(convCount, estCount, minIterationCount, maxIterationCount, totalIterationCount);
+    }
+
+    @Override
+    boolean hasOrbits() {
+        return true;
+    }
+
+    @Override
+    int traceOrbit(double cR, double cI, int maxIters, double[] orbit) {
+        int k = 0;
+        double zR = cR, zI = cI, temp;
+
+        while (k < maxIters) {
+            if (zR * zR + zI * zI > BAILOUT) {
+                break;
+            }
+
+            temp = zR;
+            zR = zR * zR - zI * zI + cR;
+            zI = 2 * temp * zI + cI;
+            orbit[2 * k] = zR;
+            orbit[2 * k + 1] = zI;
+            k++;
+        }
+        return k;
+    }
+
+    /*
+     * Tests for the main cardioid and the period-2 bulb, which hold most of the set's area.
+     */
+    @Override
+    boolean isKnownInterior(double cR, double cI) {
+        double x = cR - 0.25, q = x * x + cI * cI;
+
+        return q * (q + x) <= 0.25 * cI * cI || (cR + 1) * (cR + 1) + cI * cI <= 0.0625;
+    }
+}
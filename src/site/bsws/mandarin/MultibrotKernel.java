@@ -0,0 +1,183 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  MultibrotKernel.java
+ *
+ *  The escape-time loop for z -> z^n + c, for integer n > 2.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.Rectangle;
+
+/**
+ * Powers 3 and 4 have loops of their own: z^3 is expanded so that it reuses the squares of the
+ * bailout test, and z^4 is z squared twice. Their results differ from the general loop's only by
+ * rounding.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class MultibrotKernel extends Kernel {
+
+    private final int power;
+    private final double logPower;
+
+    public MultibrotKernel(int power) {
+        super("Multibrot (z^" + power + ")");
+        if (power < 3) {
+            throw new IllegalArgumentException("Power must be at least 3; use MandelbrotKernel for 2.");
+        }
+        this.power = power;
+        this.logPower = Math.log(power);
+    }
+
+    @Override
+    public String getSpec() {
+        return "multibrot:" + power;
+    }
+
+    @Override
+    boolean isConjugateSymmetric() {
+        return true;
+    }
+
+    private float fractionalIterations(int iters, int maxIters, double zR, double zI) {
+        if (iters == maxIters) {
+            return iters;
+        }
+        return (float) (iters - Math.log(Math.log(Math.sqrt(zR * zR + zI * zI))) / logPower);
+    }
+
+    @Override
+    void iterateRegion(Engine.Parameters p, Rectangle region, float[] iterData, Engine.Statistics stats) {
+        int k, maxIters = p.maxIters, convCount = 0, minIterationCount = maxIters, maxIterationCount = 1;
+        long totalIterationCount = 0;
+        double cR, aR, cI, aI, colR, colI, rowR, rowI, z[] = new double[2];
+
+        colR = p.colStepR;
+        colI = p.colStepI;
+        rowR = p.rowStepR;
+        rowI = p.rowStepI;
+        aR = p.originR;
+        aI = p.originI;
+        for (int i = 0; i < region.width; i++) {
+            for (int j = 0; j < region.height; j++) {
+                z[0] = cR = aR + colR * (region.x + i) + rowR * (region.y + j);
+                z[1] = cI = aI + colI * (region.x + i) + rowI * (region.y + j);
+                k = iterate(cR, cI, z, 0, maxIters, null);
+
+                if (k < maxIters) {
+                    convCount++;
+                }
+                if (k > maxIterationCount) {
+                    maxIterationCount = k;
+                }
+                if (k < minIterationCount) {
+                    minIterationCount = k;
+                }
+                totalIterationCount += k;
+                iterData[(region.y + j) * p.imgWidth + region.x + i] = fractionalIterations(k, maxIters, z[0], z[1]);
+            }
+        }
+        stats.add(convCount, 0, minIterationCount, maxIterationCount, totalIterationCount);
+    }
+
+    /*
+     * Iterates from z, the k-th iterate of c, until it escapes or k reaches maxIters, storing each
+     * new iterate in orbit unless it is null. Leaves the last iterate in z and returns k.
+     */
+    private int iterate(double cR, double cI, double[] z, int k, int maxIters, double[] orbit) {
+        double zR = z[0], zI = z[1], sR, sI, wR, wI, temp;
+
+        if (power == 3) {
+            while (k < maxIters) {
+                sR = zR * zR;
+                sI = zI * zI;
+                if (sR + sI > BAILOUT) {
+                    break;
+                }
+
+                temp = zR * (sR - 3 * sI) + cR;
+                zI = zI * (3 * sR - sI) + cI;
+                zR = temp;
+                if (orbit != null) {
+                    orbit[2 * k] = zR;
+                    orbit[2 * k + 1] = zI;
+                }
+                k++;
+            }
+        } else if (power == 4) {
+            while (k < maxIters) {
+                sR = zR * zR;
+                sI = zI * zI;
+                if (sR + sI > BAILOUT) {
+                    break;
+                }
+
+                wR = sR - sI;
+                wI = 2 * zR * zI;
+                zR = wR * wR - wI * wI + cR;
+                zI = 2 * wR * wI + cI;
+                if (orbit != null) {
+                    orbit[2 * k] = zR;
+                    orbit[2 * k + 1] = zI;
+                }
+                k++;
+            }
+        } else {
+            while (k < maxIters) {
+                if (zR * zR + zI * zI > BAILOUT) {
+                    break;
+                }
+
+                wR = zR;
+                wI = zI;
+                for (int n = 1; n < power; n++) {
+                    temp = wR;
+                    wR = wR * zR - wI * zI;
+                    wI = temp * zI + wI * zR;
+                }
+                zR = wR + cR;
+                zI = wI + cI;
+                if (orbit != null) {
+                    orbit[2 * k] = zR;
+                    orbit[2 * k + 1] = zI;
+                }
+                k++;
+            }
+        }
+        z[0] = zR;
+        z[1] = zI;
+        return k;
+    }
+
+    @Override
+    float iteratePoint(double cR, double cI, int maxIters, double[] dist) {
+        double z[] = {cR, cI};
+        int k = iterate(cR, cI, z, 0, maxIters, null);
+
+        if (dist != null) {
+            dist[0] = Double.POSITIVE_INFINITY;
+        }
+        return fractionalIterations(k, maxIters, z[0], z[1]);
+    }
+
+    @Override
+    float resumePoint(double cR, double cI, double[] z, int k, int maxIters) {
+        k = iterate(cR, cI, z, k, maxIters, null);
+        return fractionalIterations(k, maxIters, z[0], z[1]);
+    }
+
+    @Override
+    boolean hasOrbits() {
+        return true;
+    }
+
+    @Override
+    int traceOrbit(double cR, double cI, int maxIters, double[] orbit) {
+        return iterate(cR, cI, new double[]{cR, cI}, 0, maxIters, orbit);
+    }
+}
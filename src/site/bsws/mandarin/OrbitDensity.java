@@ -0,0 +1,329 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  OrbitDensity.java
+ *
+ *  Accumulates how often sampled orbits visit each pixel, for Buddhabrot renders.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Starting points are drawn from the square of side 2 * RADIUS, split into CELLS x CELLS cells
+ * that are picked in proportion to how much their probe orbits added to the view. Each orbit
+ * counts with the inverse of its cell's probability, so the expected density is that of uniform
+ * sampling whatever the weights. Workers collect the pixels their orbits visit in Hits buffers, one
+ * bucket of BUCKET pixels per stripe of the shared grid, and add a bucket to the grid under its
+ * stripe's lock when it fills. So they seldom wait on each other, and their memory does not grow
+ * with the frame.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class OrbitDensity {
+
+    private static final int MAGIC = 0x4D4E444F, VERSION = 1;
+    private static final int CELLS = 128, PROBES = 4, STRIPES = 64, BUCKET = 1 << 10;
+    private static final double RADIUS = 2, CELL_SIZE = 2 * RADIUS / CELLS;
+    // Every cell's weight is raised by FLOOR_WEIGHT times the mean, which mixes in that much
+    // uniform sampling. No orbit then counts more than 1 + 1 / FLOOR_WEIGHT times what it would
+    // under uniform sampling; lower floors leave the cells the probes missed as bright specks.
+    private static final double FLOOR_WEIGHT = 1;
+    // Densities are scaled so that the WHITE_POINT quantile, estimated from at most WHITE_SAMPLES
+    // pixels, is white.
+    private static final double WHITE_POINT = 0.998;
+    private static final int WHITE_SAMPLES = 1 << 16;
+    private final Engine.Parameters params;
+    private final Kernel kernel;
+    private final boolean bounded;
+    private final double density[], cellWeights[], cellBounds[];
+    private final Object stripeLocks[];
+    // Pixel idx lies in stripe idx >>> stripeShift.
+    private final int stripeShift;
+    private final double invColR, invColI, invRowR, invRowI;
+    private final AtomicLong samples;
+    private double meanWeight;
+    private volatile boolean probed;
+
+    /**
+     * Plots the orbits that escape, or with bounded set, those that do not (the anti-Buddhabrot).
+     */
+    public OrbitDensity(Engine.Parameters p, Kernel k, boolean bounded) {
+        double det = p.colStepR * p.rowStepI - p.colStepI * p.rowStepR;
+
+        this.params = p;
+        this.kernel = k;
+        this.bounded = bounded;
+        density = new double[p.imgWidth * p.imgHeight];
+        cellWeights = new double[CELLS * CELLS];
+        cellBounds = new double[CELLS * CELLS];
+        stripeLocks = new Object[STRIPES];
+        for (int s = 0; s < STRIPES; s++) {
+            stripeLocks[s] = new Object();
+        }
+        stripeShift = Math.max(0, 32 - Integer.numberOfLeadingZeros((density.length - 1) / STRIPES));
+        invColR = p.rowStepI / det;
+        invColI = -p.rowStepR / det;
+        invRowR = -p.colStepI / det;
+        invRowI = p.colStepR / det;
+        samples = new AtomicLong();
+    }
+
+    public boolean matches(Engine.Parameters p, Kernel k, boolean bounded) {
+        return this.bounded == bounded && kernel.getSpec().equals(k.getSpec())
+                && params.imgWidth == p.imgWidth && params.imgHeight == p.imgHeight
+                && params.maxIters == p.maxIters && params.originR == p.originR
+                && params.originI == p.originI && params.colStepR == p.colStepR
+                && params.colStepI == p.colStepI && params.rowStepR == p.rowStepR
+                && params.rowStepI == p.rowStepI;
+    }
+
+    public long getSamples() {
+        return samples.get();
+    }
+
+    boolean isProbed() {
+        return probed;
+    }
+
+    static int getCellRows() {
+        return CELLS;
+    }
+
+    /**
+     * Weighs one row of cells by the view pixels their probe orbits visit. Rows can be probed
+     * concurrently; finishProbing must follow once all are done.
+     */
+    void probeRow(int row, double[] orbit) {
+        SplittableRandom rng = new SplittableRandom(row);
+
+        for (int col = 0; col < CELLS; col++) {
+            int hits = 0;
+            for (int n = 0; n < PROBES; n++) {
+                double cR = -RADIUS + (col + rng.nextDouble()) * CELL_SIZE,
+                        cI = -RADIUS + (row + rng.nextDouble()) * CELL_SIZE;
+                if (!bounded && kernel.isKnownInterior(cR, cI)) {
+                    continue;
+                }
+                int k = kernel.traceOrbit(cR, cI, params.maxIters, orbit);
+                if ((k == params.maxIters) != bounded) {
+                    continue;
+                }
+                for (int t = 0; t < k; t++) {
+                    if (pixelIndex(orbit[2 * t], orbit[2 * t + 1]) >= 0) {
+                        hits++;
+                    }
+                }
+            }
+            cellWeights[row * CELLS + col] = hits;
+        }
+    }
+
+    void finishProbing() {
+        double total = 0, floor;
+
+        for (double w : cellWeights) {
+            total += w;
+        }
+        floor = total > 0 ? total / cellWeights.length * FLOOR_WEIGHT : 1;
+        total = 0;
+        for (int c = 0; c < cellWeights.length; c++) {
+            cellWeights[c] += floor;
+            total += cellWeights[c];
+            cellBounds[c] = total;
+        }
+        meanWeight = total / cellWeights.length;
+        probed = true;
+    }
+
+    /**
+     * Traces count orbits, seeded from batch, into the worker's own buffer hits. Adds the orbits'
+     * iteration totals to stats, counting the orbits that were plotted where escape-time renders
+     * count the points that escaped.
+     */
+    void sample(long batch, int count, Hits hits, double[] orbit, Engine.Statistics stats) {
+        // Seeds that differ by multiples of SplittableRandom's own increment give overlapping
+        // streams, so the batch number is spread by a different odd constant.
+        SplittableRandom rng = new SplittableRandom(batch * 0xBF58476D1CE4E5B9L + 0x5DEECE66DL);
+        int maxIters = params.maxIters, plotted = 0, minIter = maxIters, maxIter = 0;
+        long totalIters = 0;
+        double total = cellBounds[cellBounds.length - 1];
+
+        for (int n = 0; n < count; n++) {
+            int cell = Arrays.binarySearch(cellBounds, rng.nextDouble() * total), k;
+            cell = cell < 0 ? -cell - 1 : cell;
+            double cR = -RADIUS + (cell % CELLS + rng.nextDouble()) * CELL_SIZE,
+                    cI = -RADIUS + (cell / CELLS + rng.nextDouble()) * CELL_SIZE;
+            float weight = (float) (meanWeight / cellWeights[cell]);
+
+            if (!bounded && kernel.isKnownInterior(cR, cI)) {
+                continue; // Would stay bounded, so it adds nothing to the Buddhabrot.
+            }
+            k = kernel.traceOrbit(cR, cI, maxIters, orbit);
+            totalIters += k;
+            maxIter = Math.max(maxIter, k);
+            minIter = Math.min(minIter, k);
+            if ((k == maxIters) != bounded) {
+                continue;
+            }
+            plotted++;
+            for (int t = 0; t < k; t++) {
+                int idx = pixelIndex(orbit[2 * t], orbit[2 * t + 1]);
+                if (idx >= 0) {
+                    int s = idx >>> stripeShift, at = s * BUCKET + hits.counts[s];
+                    hits.pixels[at] = idx;
+                    hits.weights[at] = weight;
+                    if (++hits.counts[s] == BUCKET) {
+                        flush(hits, s);
+                    }
+                }
+            }
+        }
+        samples.addAndGet(count);
+        stats.add(plotted, 0, minIter, maxIter, totalIters);
+    }
+
+    /**
+     * Adds a worker's buffered hits to the shared grid and empties the buffer.
+     */
+    void merge(Hits hits) {
+        for (int s = 0; s < STRIPES; s++) {
+            flush(hits, s);
+        }
+    }
+
+    private void flush(Hits hits, int s) {
+        int from = s * BUCKET, to = from + hits.counts[s];
+
+        synchronized (stripeLocks[s]) {
+            for (int n = from; n < to; n++) {
+                density[hits.pixels[n]] += hits.weights[n];
+            }
+        }
+        hits.counts[s] = 0;
+    }
+
+    /**
+     * Writes each pixel's density as a fraction of the white point, square-rooted to bring out the
+     * faint orbits and clamped to 1.
+     */
+    void normalise(float[] out) {
+        int stride = Math.max(1, density.length / WHITE_SAMPLES);
+        double sorted[] = new double[(density.length + stride - 1) / stride], white;
+
+        for (int n = 0; n < sorted.length; n++) {
+            sorted[n] = density[n * stride];
+        }
+        Arrays.sort(sorted);
+        white = sorted[(int) (WHITE_POINT * (sorted.length - 1))];
+        if (!(white > 0)) {
+            white = sorted[sorted.length - 1];
+        }
+        for (int idx = 0; idx < density.length; idx++) {
+            out[idx] = white > 0 ? (float) Math.sqrt(Math.min(1, density[idx] / white)) : 0;
+        }
+    }
+
+    private int pixelIndex(double zR, double zI) {
+        double dR = zR - params.originR, dI = zI - params.originI;
+        int i = (int) Math.floor(invColR * dR + invColI * dI + 0.5),
+                j = (int) Math.floor(invRowR * dR + invRowI * dI + 0.5);
+
+        if (i < 0 || i >= params.imgWidth || j < 0 || j >= params.imgHeight) {
+            return -1;
+        }
+        return j * params.imgWidth + i;
+    }
+
+    /**
+     * Saves the accumulated grid, replacing f only once the new copy is complete. Workers may keep
+     * merging meanwhile; each stripe is copied under its lock.
+     */
+    void writeCheckpoint(File f) throws IOException {
+        File temp = new File(f.getPath() + ".tmp");
+        int stripeLength = 1 << stripeShift;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(new FileOutputStream(temp)), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(kernel.getSpec());
+            out.writeBoolean(bounded);
+            out.writeInt(params.imgWidth);
+            out.writeInt(params.imgHeight);
+            out.writeInt(params.maxIters);
+            out.writeDouble(params.originR);
+            out.writeDouble(params.originI);
+            out.writeDouble(params.colStepR);
+            out.writeDouble(params.colStepI);
+            out.writeDouble(params.rowStepR);
+            out.writeDouble(params.rowStepI);
+            out.writeLong(samples.get());
+            for (int s = 0; s < STRIPES; s++) {
+                int end = (int) Math.min(density.length, (long) (s + 1) * stripeLength);
+                synchronized (stripeLocks[s]) {
+                    for (int idx = s * stripeLength; idx < end; idx++) {
+                        out.writeDouble(density[idx]);
+                    }
+                }
+            }
+        }
+        Files.move(temp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Resumes from a checkpoint written by writeCheckpoint, or returns null if it was taken of
+     * another view. The importance weights are not saved; probe again before sampling.
+     */
+    static OrbitDensity readCheckpoint(File f, Engine.Parameters p, Kernel k, boolean bounded)
+            throws IOException {
+        OrbitDensity d = new OrbitDensity(p, k, bounded);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new FileInputStream(f)), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an orbit density checkpoint.");
+            }
+            if (!in.readUTF().equals(k.getSpec()) || in.readBoolean() != bounded
+                    || in.readInt() != p.imgWidth || in.readInt() != p.imgHeight
+                    || in.readInt() != p.maxIters || in.readDouble() != p.originR
+                    || in.readDouble() != p.originI || in.readDouble() != p.colStepR
+                    || in.readDouble() != p.colStepI || in.readDouble() != p.rowStepR
+                    || in.readDouble() != p.rowStepI) {
+                return null;
+            }
+            d.samples.set(in.readLong());
+            for (int idx = 0; idx < d.density.length; idx++) {
+                d.density[idx] = in.readDouble();
+            }
+        }
+        return d;
+    }
+
+    /**
+     * A worker's pixel visits, not yet added to the grid.
+     */
+    static class Hits {
+
+        private final int pixels[] = new int[STRIPES * BUCKET], counts[] = new int[STRIPES];
+        private final float weights[] = new float[STRIPES * BUCKET];
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  PngWriter.java
+ *
+ *  Writes RGB PNG files, filtering and deflating horizontal bands in parallel.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.TreeMap;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Each band is filtered and deflated on its own, pigz-style: every band but the last ends with a
+ * sync flush, so the raw deflate streams can simply be concatenated behind one zlib header, and the
+ * Adler-32 of the whole is combined from the bands'. Because the first row of a band is filtered
+ * without reference to the row above it, bands do not depend on each other and may be submitted
+ * in any order, for instance as they finish rendering. They are written out in order as soon as
+ * the bands before them are done. Bands are encoded as background work in the WorkerPool, so an
+ * export gives way to interactive rendering.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class PngWriter implements Closeable {
+
+    private static class Band {
+
+        final byte[] data;
+        final long adler, length;
+
+        Band(byte[] data, long adler, long length) {
+            this.data = data;
+            this.adler = adler;
+            this.length = length;
+        }
+    }
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int ADLER_BASE = 65521, MIN_BAND_HEIGHT = 16;
+    private final FileChannel channel;
+    private final int width, height;
+    private final TreeMap<Integer, Band> finished;
+    private int nextRow, pending;
+    private long adler;
+    private IOException failure;
+
+    public PngWriter(File f, int width, int height) throws IOException {
+        ByteBuffer header;
+
+        this.width = width;
+        this.height = height;
+        channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        finished = new TreeMap<>();
+        nextRow = 0;
+
+        header = ByteBuffer.allocate(13);
+        header.putInt(width).putInt(height);
+        header.put((byte) 8).put((byte) 2).put((byte) 0).put((byte) 0).put((byte) 0);
+        writeFully(ByteBuffer.wrap(SIGNATURE));
+        writeChunk("IHDR", header.array());
+    }
+
+    /**
+     * Writes a whole image, using its pixel array directly if it is TYPE_INT_RGB.
+     */
+    public static void write(BufferedImage i, File f) throws IOException {
+        int[] pixels;
+        int bandHeight;
+
+        if (i.getType() == BufferedImage.TYPE_INT_RGB) {
+            pixels = ((DataBufferInt) i.getRaster().getDataBuffer()).getData();
+        } else {
+            pixels = i.getRGB(0, 0, i.getWidth(), i.getHeight(), null, 0, i.getWidth());
+        }
+        bandHeight = Math.max(MIN_BAND_HEIGHT,
+                i.getHeight() / (Runtime.getRuntime().availableProcessors() * 4) + 1);
+        try (PngWriter w = new PngWriter(f, i.getWidth(), i.getHeight())) {
+            for (int y = 0; y < i.getHeight(); y += bandHeight) {
+                w.submitBand(pixels, y, Math.min(bandHeight, i.getHeight() - y));
+            }
+        }
+    }
+
+    /**
+     * Queues rows y to y + rows - 1 of pixels, a width x height array of RGB values, for encoding.
+     * The rows must not change until close returns. Every row must be submitted exactly once.
+     */
+    public void submitBand(final int[] pixels, final int y, final int rows) {
+        synchronized (finished) {
+            pending++;
+        }
+        WorkerPool.execute(WorkerPool.Priority.BACKGROUND, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Band b = encodeBand(pixels, y, rows);
+                    synchronized (finished) {
+                        finished.put(y, b);
+                        writeFinishedBands();
+                    }
+                } catch (IOException ex) {
+                    synchronized (finished) {
+                        failure = ex;
+                    }
+                } finally {
+                    synchronized (finished) {
+                        pending--;
+                        finished.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits for the submitted bands and completes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            synchronized (finished) {
+                while (pending > 0) {
+                    finished.wait();
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                if (nextRow != height) {
+                    throw new IOException("Rows " + nextRow + " onwards were never submitted.");
+                }
+            }
+            writeChunk("IEND", new byte[0]);
+        } catch (InterruptedException ex) {
+            throw new IOException(ex);
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Called with finished locked.
+    private void writeFinishedBands() throws IOException {
+        while (!finished.isEmpty() && finished.firstKey() == nextRow) {
+            Band b = finished.remove(nextRow);
+            ByteBuffer data;
+
+            if (nextRow == 0) {
+                adler = b.adler;
+            } else {
+                adler = combineAdler(adler, b.adler, b.length);
+            }
+            nextRow += b.length / (1 + 3 * width);
+            if (nextRow == height) {
+                // The first band carries the zlib header and the last the Adler-32 trailer.
+                data = ByteBuffer.allocate(b.data.length + 4);
+                data.put(b.data).putInt((int) adler);
+                writeChunk("IDAT", data.array());
+            } else {
+                writeChunk("IDAT", b.data);
+            }
+        }
+    }
+
+    private Band encodeBand(int[] pixels, int y, int rows) {
+        int stride = 1 + 3 * width;
+        byte[] raw = new byte[rows * stride], prev = new byte[3 * width], cur = new byte[3 * width],
+                trial = new byte[3 * width], best = new byte[3 * width];
+        Adler32 a = new Adler32();
+        Deflater d = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] buf = new byte[1 << 16];
+        int n;
+
+        for (int r = 0; r < rows; r++) {
+            int offset = (y + r) * width;
+            long bestSum = Long.MAX_VALUE;
+            byte bestFilter = 0;
+
+            for (int x = 0; x < width; x++) {
+                int rgb = pixels[offset + x];
+                cur[3 * x] = (byte) (rgb >> 16);
+                cur[3 * x + 1] = (byte) (rgb >> 8);
+                cur[3 * x + 2] = (byte) rgb;
+            }
+            for (byte filter = 0; filter < (r == 0 ? 2 : 5); filter++) {
+                long sum = filterRow(filter, cur, prev, trial);
+                if (sum < bestSum) {
+                    bestSum = sum;
+                    bestFilter = filter;
+                    System.arraycopy(trial, 0, best, 0, trial.length);
+                }
+            }
+            raw[r * stride] = bestFilter;
+            System.arraycopy(best, 0, raw, r * stride + 1, best.length);
+            byte[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        a.update(raw);
+
+        if (y == 0) {
+            out.write(0x78);
+            out.write(0x9C);
+        }
+        d.setInput(raw);
+        if (y + rows == height) {
+            d.finish();
+            while (!d.finished()) {
+                n = d.deflate(buf);
+                out.write(buf, 0, n);
+            }
+        } else {
+            do {
+                n = d.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                out.write(buf, 0, n);
+            } while (n == buf.length);
+        }
+        d.end();
+        return new Band(out.toByteArray(), a.getValue(), raw.length);
+    }
+
+    /*
+     * Applies one of the five PNG filters (None, Sub, Up, Average, Paeth) and returns the sum of the
+     * absolute values of the filtered bytes, which is the usual heuristic for picking a filter.
+     */
+    private static long filterRow(byte filter, byte[] cur, byte[] prev, byte[] out) {
+        long sum = 0;
+
+        for (int i = 0; i < cur.length; i++) {
+            int x = cur[i] & 0xFF, a = i >= 3 ? cur[i - 3] & 0xFF : 0, b = prev[i] & 0xFF,
+                    c = i >= 3 ? prev[i - 3] & 0xFF : 0, v;
+
+            switch (filter) {
+                case 1:
+                    v = x - a;
+                    break;
+                case 2:
+                    v = x - b;
+                    break;
+                case 3:
+                    v = x - ((a + b) >> 1);
+                    break;
+                case 4:
+                    v = x - paeth(a, b, c);
+                    break;
+                default:
+                    v = x;
+            }
+            out[i] = (byte) v;
+            sum += Math.abs((byte) v);
+        }
+        return sum;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c, pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    /*
+     * The Adler-32 of the concatenation of two byte sequences, given each one's checksum and the
+     * second one's length; the same arithmetic as zlib's adler32_combine.
+     */
+    private static long combineAdler(long adler1, long adler2, long len2) {
+        long rem = len2 % ADLER_BASE, sum1, sum2;
+
+        sum1 = adler1 & 0xFFFF;
+        sum2 = (rem * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + ADLER_BASE - rem;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= 2 * ADLER_BASE) {
+            sum2 -= 2 * ADLER_BASE;
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    private void writeChunk(String type, byte[] data) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(12 + data.length);
+        CRC32 crc = new CRC32();
+
+        b.putInt(data.length);
+        b.put(type.getBytes("US-ASCII"));
+        b.put(data);
+        crc.update(b.array(), 4, 4 + data.length);
+        b.putInt((int) crc.getValue());
+        b.flip();
+        writeFully(b);
+    }
+
+    private void writeFully(ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            channel.write(b);
+        }
+    }
+}
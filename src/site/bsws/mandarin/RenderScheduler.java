@@ -0,0 +1,231 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  RenderScheduler.java
+ *
+ *  Sits between the user interface and Engine, and keeps at most one render waiting.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.Rectangle;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Only the latest requested frame is kept; a newer request replaces a waiting one, so no burst of
+ * UI events queues more than one render. Engine events are passed on to the downstream listener,
+ * except those of prefetches, which run only when nothing else is asked for.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class RenderScheduler implements Engine.Listener {
+
+    // Debounced requests wait for DEBOUNCE_DELAY milliseconds without a newer one.
+    private static final long DEBOUNCE_DELAY = 150;
+    private final Engine.Listener downstream;
+    private final ScheduledExecutorService timer;
+    private Runnable pending;
+    private ScheduledFuture<?> debounce;
+    private boolean rendering;
+    private volatile boolean prefetching;
+    private final Deque<Engine.Parameters> prefetchQueue = new ArrayDeque<>();
+    private List<Engine.Parameters> prefetchViews;
+
+    public RenderScheduler(Engine.Listener downstream) {
+        this.downstream = downstream;
+        timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "RenderScheduler");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Renders p as soon as the engine is free. If supersede is set, the current render is cancelled
+     * rather than waited for.
+     */
+    public synchronized void submit(final Engine.Parameters p, boolean supersede) {
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                Engine.setParameters(p);
+                Engine.startRendering();
+            }
+        }, supersede);
+    }
+
+    /**
+     * Replaces the current or waiting render with a reload of s.
+     */
+    public synchronized void submitRestore(final Session s) {
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                Engine.startRestoring(s);
+            }
+        }, true);
+    }
+
+    /**
+     * Replaces the current or waiting render with one of region of the last finished frame at the
+     * iteration limit maxIters; see Engine.startRegionRendering.
+     */
+    public synchronized void submitRegion(final Rectangle region, final int maxIters, final boolean antiAliasing) {
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                if (!Engine.startRegionRendering(region, maxIters, antiAliasing)) {
+                    startNext();
+                }
+            }
+        }, true);
+    }
+
+    private void enqueue(Runnable r, boolean supersede) {
+        cancelDebounce();
+        prefetchQueue.clear();
+        pending = r;
+        if (!rendering) {
+            startPending();
+        } else if (supersede || prefetching) {
+            Engine.cancelRendering();
+        }
+    }
+
+    /**
+     * Replaces the views waiting to be prefetched with those given, most likely first, and drops
+     * the earlier prefetched frames that are not among them. Views already prefetched are skipped.
+     */
+    public synchronized void prefetch(List<Engine.Parameters> views) {
+        prefetchQueue.clear();
+        for (Engine.Parameters p : views) {
+            if (!Engine.isPrefetched(p)) {
+                prefetchQueue.add(p);
+            }
+        }
+        prefetchViews = views;
+        if (!rendering && pending == null && debounce == null) {
+            startPrefetch();
+        } else if (prefetching) {
+            Engine.cancelRendering(); // It may be of a view no longer wanted; if not, it is queued.
+        }
+    }
+
+    /**
+     * Like submit with supersede set, but only once no other request has arrived for
+     * DEBOUNCE_DELAY milliseconds.
+     */
+    public synchronized void submitDebounced(final Engine.Parameters p) {
+        cancelDebounce();
+        prefetchQueue.clear();
+        pending = null;
+        if (prefetching) {
+            Engine.cancelRendering();
+        }
+        debounce = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                submit(p, true);
+            }
+        }, DEBOUNCE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Tells whether no render other than a prefetch is running or waiting.
+     */
+    public synchronized boolean isIdle() {
+        return (!rendering || prefetching) && pending == null && debounce == null;
+    }
+
+    private void cancelDebounce() {
+        if (debounce != null) {
+            debounce.cancel(false);
+            debounce = null;
+        }
+    }
+
+    private void startPending() {
+        Runnable r = pending;
+
+        pending = null;
+        rendering = true;
+        r.run();
+    }
+
+    private void startPrefetch() {
+        if (prefetchViews != null) {
+            Engine.retainPrefetched(prefetchViews);
+            prefetchViews = null;
+        }
+        if (prefetchQueue.isEmpty()) {
+            return;
+        }
+        rendering = true;
+        prefetching = true;
+        Engine.setParameters(prefetchQueue.poll());
+        Engine.startPrefetching();
+    }
+
+    @Override
+    public void renderingBegun() {
+        if (!prefetching) {
+            downstream.renderingBegun();
+        }
+    }
+
+    @Override
+    public void regionRendered(Rectangle region) {
+        if (!prefetching) {
+            downstream.regionRendered(region);
+        }
+    }
+
+    @Override
+    public void renderingEnded() {
+        if (!prefetching) {
+            downstream.renderingEnded();
+        }
+        startNext();
+    }
+
+    /*
+     * Starts whatever waits once the engine is free, or once a request turned out to start
+     * nothing.
+     */
+    private synchronized void startNext() {
+        rendering = false;
+        prefetching = false;
+        if (pending != null) {
+            startPending();
+        } else if (debounce == null) {
+            startPrefetch();
+        }
+    }
+
+    @Override
+    public void errorOccurred() {
+        if (!prefetching) {
+            downstream.errorOccurred();
+        }
+    }
+
+    @Override
+    public void statsGenerated() {
+        if (!prefetching) {
+            downstream.statsGenerated();
+        }
+    }
+}
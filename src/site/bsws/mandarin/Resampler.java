@@ -0,0 +1,257 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  Resampler.java
+ *
+ *  Scales RGB images with a separable filter, a band of rows per thread.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rows are filtered horizontally into an intermediate image, whose columns are then filtered
+ * vertically. The taps and weights of every output column and row are computed once per pair of
+ * sizes and kept, as are the intermediate and output images, so repeated scaling between the same
+ * sizes allocates nothing. When shrinking, the filter is widened by the reduction so that it also
+ * serves as the low-pass filter.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class Resampler {
+
+    public static enum Filter {
+
+        BILINEAR(1),
+        LANCZOS(3);
+        private final int radius;
+
+        Filter(int radius) {
+            this.radius = radius;
+        }
+
+        double weight(double x) {
+            x = Math.abs(x);
+            if (this == BILINEAR) {
+                return Math.max(0, 1 - x);
+            }
+            if (x < 1e-9) {
+                return 1;
+            }
+            if (x >= radius) {
+                return 0;
+            }
+            return radius * Math.sin(Math.PI * x) * Math.sin(Math.PI * x / radius) / (Math.PI * Math.PI * x * x);
+        }
+    }
+
+    /*
+     * For each output index, the first input index it reads and the weights of that and the
+     * following taps - 1 inputs, in fixed point with WEIGHT_BITS fraction bits and summing to 1.
+     */
+    private static class Weights {
+
+        final int from, to, start[], taps, weights[];
+
+        Weights(Filter filter, int from, int to) {
+            double scale = to / (double) from, stretch = Math.min(1, scale),
+                    support = filter.radius / stretch, w[];
+
+            this.from = from;
+            this.to = to;
+            // No more than ceil(2 * support) inputs lie strictly within support of the centre.
+            taps = Math.min(from, (int) Math.ceil(2 * support));
+            start = new int[to];
+            weights = new int[to * taps];
+            w = new double[taps];
+            for (int o = 0; o < to; o++) {
+                double centre = (o + 0.5) / scale - 0.5, sum = 0;
+                int first = Math.max(0, Math.min(from - taps, (int) Math.floor(centre - support) + 1)),
+                        total = 0, largest = 0;
+
+                start[o] = first;
+                for (int t = 0; t < taps; t++) {
+                    w[t] = filter.weight((first + t - centre) * stretch);
+                    sum += w[t];
+                }
+                for (int t = 0; t < taps; t++) {
+                    weights[o * taps + t] = (int) Math.round(w[t] / sum * ONE);
+                    total += weights[o * taps + t];
+                    if (w[t] > w[largest]) {
+                        largest = t;
+                    }
+                }
+                // Rounding may leave the sum a little off 1; the centre tap takes up the slack.
+                weights[o * taps + largest] += ONE - total;
+            }
+        }
+    }
+
+    private static abstract class Rows {
+
+        abstract void run(int from, int to);
+    }
+
+    // Below MIN_BAND_ROWS rows per thread, splitting costs more than it saves.
+    private static final int MIN_BAND_ROWS = 32, WEIGHT_BITS = 14, ONE = 1 << WEIGHT_BITS,
+            HALF = ONE >> 1;
+    private final Filter filter;
+    private Weights columns, rows;
+    private int intermediate[];
+    private BufferedImage output;
+
+    public Resampler(Filter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Returns i scaled to width x height, or i itself if it already has that size. The returned
+     * image belongs to the resampler and is overwritten by the next call.
+     */
+    public synchronized BufferedImage resample(BufferedImage i, int width, int height) {
+        int src[];
+
+        if (i.getWidth() == width && i.getHeight() == height) {
+            return i;
+        }
+        if (i.getType() == BufferedImage.TYPE_INT_RGB) {
+            src = ((DataBufferInt) i.getRaster().getDataBuffer()).getData();
+        } else {
+            src = i.getRGB(0, 0, i.getWidth(), i.getHeight(), null, 0, i.getWidth());
+        }
+        if (output == null || output.getWidth() != width || output.getHeight() != height) {
+            output = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        resample(src, i.getWidth(), i.getHeight(),
+                ((DataBufferInt) output.getRaster().getDataBuffer()).getData(), width, height);
+        return output;
+    }
+
+    /**
+     * Scales src, a srcWidth x srcHeight array of RGB values, into dst, a dstWidth x dstHeight one.
+     */
+    public synchronized void resample(final int[] src, final int srcWidth, int srcHeight,
+            final int[] dst, final int dstWidth, int dstHeight) {
+        final Weights cols = columns = weightsFor(columns, srcWidth, dstWidth),
+                rws = rows = weightsFor(rows, srcHeight, dstHeight);
+        final int n = dstWidth * srcHeight, planes[];
+
+        if (intermediate == null || intermediate.length < 3 * n) {
+            intermediate = new int[3 * n];
+        }
+        // The intermediate image is kept as three planes, one per channel, so the vertical pass is
+        // plain multiply-adds over rows that the compiler can vectorise.
+        planes = intermediate;
+        inParallel(srcHeight, new Rows() {
+            @Override
+            void run(int from, int to) {
+                for (int y = from; y < to; y++) {
+                    filterRow(src, y * srcWidth, planes, y * dstWidth, n, cols);
+                }
+            }
+        });
+        inParallel(dstHeight, new Rows() {
+            @Override
+            void run(int from, int to) {
+                int r[] = new int[dstWidth], g[] = new int[dstWidth], b[] = new int[dstWidth];
+
+                for (int y = from; y < to; y++) {
+                    Arrays.fill(r, HALF);
+                    Arrays.fill(g, HALF);
+                    Arrays.fill(b, HALF);
+                    for (int t = 0; t < rws.taps; t++) {
+                        int row = (rws.start[y] + t) * dstWidth, w = rws.weights[y * rws.taps + t];
+
+                        accumulate(planes, row, w, r);
+                        accumulate(planes, row + n, w, g);
+                        accumulate(planes, row + 2 * n, w, b);
+                    }
+                    for (int x = 0, at = y * dstWidth; x < dstWidth; x++) {
+                        dst[at + x] = clamp(r[x]) << 16 | clamp(g[x]) << 8 | clamp(b[x]);
+                    }
+                }
+            }
+        });
+    }
+
+    private static void accumulate(int[] in, int offset, int w, int[] sum) {
+        for (int x = 0; x < sum.length; x++) {
+            sum[x] += w * in[offset + x];
+        }
+    }
+
+    private Weights weightsFor(Weights w, int from, int to) {
+        return w != null && w.from == from && w.to == to ? w : new Weights(filter, from, to);
+    }
+
+    /*
+     * Filters one row of packed pixels into the three planes of out, which are plane apart.
+     */
+    private static void filterRow(int[] in, int inBase, int[] out, int outBase, int plane, Weights w) {
+        for (int o = 0, k = 0; o < w.to; o++) {
+            int r = HALF, g = HALF, b = HALF;
+
+            for (int t = 0, idx = inBase + w.start[o]; t < w.taps; t++, idx++, k++) {
+                int p = in[idx], weight = w.weights[k];
+                r += weight * ((p >> 16) & 0xFF);
+                g += weight * ((p >> 8) & 0xFF);
+                b += weight * (p & 0xFF);
+            }
+            out[outBase + o] = clamp(r);
+            out[outBase + o + plane] = clamp(g);
+            out[outBase + o + 2 * plane] = clamp(b);
+        }
+    }
+
+    private static int clamp(int v) {
+        return v <= 0 ? 0 : v >= 255 << WEIGHT_BITS ? 255 : v >> WEIGHT_BITS;
+    }
+
+    /*
+     * Bands are taken by interactive workers of the WorkerPool and by the calling thread, which
+     * then waits only for the bands under way; while a render holds every core, the caller does
+     * all of them rather than wait for a slot.
+     */
+    private static void inParallel(final int count, final Rows rows) {
+        final int bands = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), count / MIN_BAND_ROWS)),
+                bandRows = (count + bands - 1) / bands;
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch latch;
+        Runnable work;
+
+        if (bands == 1) {
+            rows.run(0, count);
+            return;
+        }
+        latch = new CountDownLatch(bands);
+        work = new Runnable() {
+            @Override
+            public void run() {
+                for (int b; (b = next.getAndIncrement()) < bands;) {
+                    try {
+                        rows.run(b * bandRows, Math.min(count, (b + 1) * bandRows));
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }
+        };
+        for (int b = 1; b < bands; b++) {
+            WorkerPool.execute(WorkerPool.Priority.INTERACTIVE, work);
+        }
+        work.run();
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
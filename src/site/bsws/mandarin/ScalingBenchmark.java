@@ -0,0 +1,223 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  ScalingBenchmark.java
+ *
+ *  Times whole Engine renders of a corpus of views on growing numbers of worker threads.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Each view is rendered by Engine on 1, 2, 4 and so on up to the maximum number of threads, from
+ * nothing each time: the engine is reset between renders, so that no frame is reused, and the tile
+ * cache is off. A run keeps the fastest of REPEATS renders. For every view and thread count, the CSV
+ * file gets a line with the wall time, the speedup over one thread, the parallel efficiency
+ * (speedup per thread), the time until the first region was shown, and the time workers spent idle
+ * waiting for the last one of a pass, in total and as a share of the threads' time. The summary
+ * gives the same for the corpus as a whole.
+ *
+ * The corpus is built in, or read from a BatchRenderer job file, whose output names are ignored.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class ScalingBenchmark {
+
+    private static class Run {
+
+        final double wall, firstRegion, idle;
+
+        Run(double wall, double firstRegion, double idle) {
+            this.wall = wall;
+            this.firstRegion = firstRegion;
+            this.idle = idle;
+        }
+    }
+
+    private static final int REPEATS = 3;
+    private static volatile CountDownLatch renderEnded;
+    private static volatile long renderStart, firstRegion;
+
+    private ScalingBenchmark() {
+    }
+
+    private static List<Engine.Parameters> corpus() {
+        List<Engine.Parameters> views = new ArrayList<>();
+        EnumSet<Engine.Parameters.Option> none = EnumSet.noneOf(Engine.Parameters.Option.class);
+        Engine.Parameters.ColouringMethod regular = Engine.Parameters.ColouringMethod.REGULAR;
+
+        views.add(new Engine.Parameters(-2.5, 1, -1.3125, 1.3125, 1280, 960, 500, regular,
+                MandelbrotKernel.INSTANCE, none));
+        views.add(new Engine.Parameters(-0.7530, -0.7390, 0.0935, 0.1040, 1280, 960, 2000, regular,
+                MandelbrotKernel.INSTANCE, none));
+        views.add(new Engine.Parameters(-0.7530, -0.7390, 0.0935, 0.1040, 320, 240, 2000, regular,
+                MandelbrotKernel.INSTANCE, none));
+        views.add(new Engine.Parameters(-1.7687782, -1.7687774, -0.0017365, -0.0017359, 960, 720, 4000,
+                regular, MandelbrotKernel.INSTANCE, none));
+        views.add(new Engine.Parameters(-1.6, 1.6, -0.9, 0.9, 1920, 1080, 1000, regular,
+                new JuliaKernel(-0.8, 0.156), none));
+        views.add(new Engine.Parameters(-1.8, -1.7, -0.08, -0.005, 1280, 960, 1000, regular,
+                BurningShipKernel.INSTANCE, none));
+        return views;
+    }
+
+    /*
+     * Renders p from nothing on the given number of threads.
+     */
+    private static Run render(Engine.Parameters p, int threads) throws InterruptedException {
+        Engine.cleanup();
+        Engine.setThreadCount(threads);
+        Engine.initialize(listener);
+        Engine.setParameters(p);
+        renderEnded = new CountDownLatch(1);
+        firstRegion = 0;
+        renderStart = System.nanoTime();
+        Engine.startRendering();
+        renderEnded.await();
+        return new Run((System.nanoTime() - renderStart) / 1e6, (firstRegion - renderStart) / 1e6,
+                Engine.getStatistics().idleTime);
+    }
+
+    private static final Engine.Listener listener = new Engine.Listener() {
+        @Override
+        public void renderingBegun() {
+        }
+
+        @Override
+        public synchronized void regionRendered(Rectangle region) {
+            if (firstRegion == 0) {
+                firstRegion = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void renderingEnded() {
+            renderEnded.countDown();
+        }
+
+        @Override
+        public void errorOccurred() {
+        }
+
+        @Override
+        public void statsGenerated() {
+        }
+    };
+
+    private static Run best(Engine.Parameters p, int threads) throws InterruptedException {
+        Run best = null;
+
+        for (int n = 0; n < REPEATS; n++) {
+            Run r = render(p, threads);
+            if (best == null || r.wall < best.wall) {
+                best = r;
+            }
+        }
+        return best;
+    }
+
+    private static List<Integer> threadCounts(int max) {
+        List<Integer> counts = new ArrayList<>();
+
+        for (int n = 1; n < max; n *= 2) {
+            counts.add(n);
+        }
+        counts.add(max);
+        return counts;
+    }
+
+    /**
+     * @param args the CSV file to write, optionally a job file to take the views from, and
+     * optionally the largest number of threads, by default one per core
+     */
+    public static void main(String args[]) {
+        List<Engine.Parameters> views = new ArrayList<>();
+        List<Integer> counts;
+        int max = Runtime.getRuntime().availableProcessors();
+
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: ScalingBenchmark <CSV file> [job file|-] [max threads]");
+            System.exit(2);
+        }
+        try {
+            if (args.length > 1 && !args[1].equals("-")) {
+                for (BatchRenderer.Job j : BatchRenderer.readJobs(new File(args[1]))) {
+                    views.add(j.params);
+                }
+            } else {
+                views = corpus();
+            }
+            if (args.length > 2) {
+                max = Integer.parseInt(args[2]);
+            }
+        } catch (IOException | NumberFormatException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(2);
+        }
+        if (views.isEmpty() || max < 1) {
+            System.err.println("Nothing to render.");
+            System.exit(2);
+        }
+        counts = threadCounts(max);
+        Engine.setTileCache(null);
+
+        try (PrintWriter csv = new PrintWriter(new FileWriter(args[0]))) {
+            double totals[] = new double[counts.size()], firsts[] = new double[counts.size()],
+                    idles[] = new double[counts.size()];
+
+            csv.println("view,kernel,width,height,max_iterations,threads,wall_ms,speedup,efficiency,"
+                    + "first_region_ms,idle_ms,idle_share");
+            // Once through the first view, so that the code is compiled before anything is timed.
+            render(views.get(0), max);
+            for (int v = 0; v < views.size(); v++) {
+                Engine.Parameters p = views.get(v);
+                double single = 0;
+
+                for (int c = 0; c < counts.size(); c++) {
+                    int threads = counts.get(c);
+                    Run r = best(p, threads);
+
+                    if (c == 0) {
+                        single = r.wall;
+                    }
+                    totals[c] += r.wall;
+                    firsts[c] += r.firstRegion;
+                    idles[c] += r.idle;
+                    csv.printf("%d,%s,%d,%d,%d,%d,%.2f,%.3f,%.3f,%.2f,%.2f,%.4f%n", v, p.kernel.getSpec(),
+                            p.imgWidth, p.imgHeight, p.maxIters, threads, r.wall, single / r.wall,
+                            single / r.wall / threads, r.firstRegion, r.idle, r.idle / (r.wall * threads));
+                    System.out.printf("View %d (%s, %dx%d, %d iterations), %d threads: %.1f ms%n", v,
+                            p.kernel.getName(), p.imgWidth, p.imgHeight, p.maxIters, threads, r.wall);
+                }
+            }
+            System.out.println();
+            System.out.printf("%7s %12s %8s %10s %17s %10s%n", "Threads", "Total (ms)", "Speedup",
+                    "Efficiency", "First region (ms)", "Idle");
+            for (int c = 0; c < counts.size(); c++) {
+                int threads = counts.get(c);
+                System.out.printf("%7d %12.1f %8.2f %9.1f%% %17.2f %9.1f%%%n", threads, totals[c],
+                        totals[0] / totals[c], 100 * totals[0] / totals[c] / threads, firsts[c] / views.size(),
+                        100 * idles[c] / (totals[c] * threads));
+            }
+        } catch (IOException | InterruptedException ex) {
+            Logger.getLogger(ScalingBenchmark.class.getName()).log(Level.SEVERE, null, ex);
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  Session.java
+ *
+ *  Saves and reopens a render's parameters, statistics and iteration data.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.Rectangle;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The file starts with a header holding the parameters and statistics, followed by an index of
+ * the tiles' offsets and lengths and then the tiles. Each tile holds the smooth iteration counts
+ * (and the distance estimates, if the render had them) of a TILE_SIZE x TILE_SIZE block, as the
+ * differences between the bit patterns of horizontally adjacent values, deflated. A session is
+ * opened by mapping the file and reading only the header and index; tiles are inflated when they
+ * are asked for. The header and index are mapped apart from each tile, so that no mapping need
+ * reach past 2 GB however large the session is.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class Session {
+
+    private static final int MAGIC = 0x4D4E4453, VERSION = 2, TILE_SIZE = 256;
+    private final MappedByteBuffer[] tileData;
+    private final Engine.Parameters params;
+    private final Engine.Statistics stats;
+    private final int channels;
+    private final List<Rectangle> tiles;
+
+    private Session(FileChannel c) throws IOException {
+        MappedByteBuffer map = c.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(c.size(), Integer.MAX_VALUE));
+        int tileCount;
+        double minX, maxX, minY, maxY, rotation;
+        int version, width, height, maxIters;
+        Engine.Parameters.ColouringMethod colMeth;
+        Kernel kernel;
+        EnumSet<Engine.Parameters.Option> options;
+
+        if (map.getInt() != MAGIC) {
+            throw new IOException("Not a session file.");
+        }
+        version = map.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported session file version.");
+        }
+        minX = map.getDouble();
+        maxX = map.getDouble();
+        minY = map.getDouble();
+        maxY = map.getDouble();
+        rotation = version >= 2 ? map.getDouble() : 0; // Version 1 had no rotation.
+        width = map.getInt();
+        height = map.getInt();
+        maxIters = map.getInt();
+        try {
+            colMeth = Engine.Parameters.ColouringMethod.valueOf(getString(map));
+            kernel = Kernel.forSpec(getString(map));
+            options = EnumSet.noneOf(Engine.Parameters.Option.class);
+            for (int n = map.getInt(); n > 0; n--) {
+                options.add(Engine.Parameters.Option.valueOf(getString(map)));
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(ex);
+        }
+        params = new Engine.Parameters(minX, maxX, minY, maxY, width, height, maxIters, colMeth, kernel,
+                options, rotation);
+
+        stats = new Engine.Statistics(map.getInt(), map.getDouble(), map.getInt(), map.getInt(),
+                map.getDouble());
+        stats.supersampledPoints = map.getInt();
+        stats.estimatedPoints = map.getInt();
+        stats.kernelName = getString(map);
+
+        channels = map.getInt();
+        tiles = createTiles(width, height);
+        tileCount = map.getInt();
+        if (tileCount != tiles.size()) {
+            throw new IOException("Corrupt tile index.");
+        }
+        tileData = new MappedByteBuffer[tileCount];
+        for (int t = 0; t < tileCount; t++) {
+            long offset = map.getLong();
+            int length = map.getInt();
+            if (offset < 0 || length < 0 || offset + length > c.size()) {
+                throw new IOException("Corrupt tile index.");
+            }
+            tileData[t] = c.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        }
+    }
+
+    public static Session open(File f) throws IOException {
+        try (FileChannel c = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            return new Session(c);
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("Truncated session file.", ex);
+        }
+    }
+
+    /**
+     * Writes a finished render; distData may be null. Tiles are compressed as background work in
+     * the WorkerPool, a worker per core, while the caller waits.
+     */
+    public static void write(File f, final Engine.Parameters p, Engine.Statistics s,
+            final float[] iterData, final float[] distData) throws IOException {
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        final List<Rectangle> tiles = createTiles(p.imgWidth, p.imgHeight);
+        final byte[][] data = new byte[tiles.size()][];
+        final AtomicInteger next = new AtomicInteger();
+        long offset;
+
+        try {
+            WorkerPool.start(Runtime.getRuntime().availableProcessors(), WorkerPool.Priority.BACKGROUND,
+                    new Runnable() {
+                @Override
+                public void run() {
+                    for (int t; (t = next.getAndIncrement()) < data.length;) {
+                        data[t] = encodeTile(tiles.get(t), p.imgWidth, iterData, distData);
+                        WorkerPool.checkpoint();
+                    }
+                }
+            }).await();
+        } catch (InterruptedException ex) {
+            throw new IOException(ex);
+        }
+
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeDouble(p.planeMinX);
+        header.writeDouble(p.planeMaxX);
+        header.writeDouble(p.planeMinY);
+        header.writeDouble(p.planeMaxY);
+        header.writeDouble(p.rotation);
+        header.writeInt(p.imgWidth);
+        header.writeInt(p.imgHeight);
+        header.writeInt(p.maxIters);
+        header.writeUTF(p.colMethod.name());
+        header.writeUTF(p.kernel.getSpec());
+        header.writeInt(p.getOptions().size());
+        for (Engine.Parameters.Option o : p.getOptions()) {
+            header.writeUTF(o.name());
+        }
+        header.writeInt(s.minIterations);
+        header.writeDouble(s.meanIterations);
+        header.writeInt(s.maxIterations);
+        header.writeInt(s.convergentPoints);
+        header.writeDouble(s.renderingTime);
+        header.writeInt(s.supersampledPoints);
+        header.writeInt(s.estimatedPoints);
+        header.writeUTF(s.kernelName == null ? "" : s.kernelName);
+        header.writeInt(distData == null ? 1 : 2);
+        header.writeInt(tiles.size());
+        offset = header.size() + tiles.size() * 12L;
+        for (byte[] d : data) {
+            header.writeLong(offset);
+            header.writeInt(d.length);
+            offset += d.length;
+        }
+        header.flush();
+
+        try (FileChannel c = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(c, ByteBuffer.wrap(headerBytes.toByteArray()));
+            for (byte[] d : data) {
+                writeFully(c, ByteBuffer.wrap(d));
+            }
+        }
+    }
+
+    public Engine.Parameters getParameters() {
+        return params;
+    }
+
+    public Engine.Statistics getStatistics() {
+        return stats;
+    }
+
+    public boolean hasDistanceData() {
+        return channels == 2;
+    }
+
+    public List<Rectangle> getTiles() {
+        return tiles;
+    }
+
+    /**
+     * Inflates tile t into the full-frame arrays; distData is ignored if null or if the session has
+     * no distance estimates.
+     */
+    public void readTile(int t, float[] iterData, float[] distData) throws IOException {
+        ByteBuffer src = tileData[t].duplicate();
+        byte[] compressed = new byte[src.remaining()];
+
+        src.get(compressed);
+        decodeTile(compressed, tiles.get(t), params.imgWidth, channels, iterData, distData);
+    }
+
+    /**
+     * Inflates a tile written by encodeTile into the full-frame arrays; distData is ignored if null
+     * or if channels is 1.
+     */
+    static void decodeTile(byte[] compressed, Rectangle tile, int imgWidth, int channels,
+            float[] iterData, float[] distData) throws IOException {
+        byte[] raw = new byte[tile.width * tile.height * 4 * channels];
+        Inflater inf = new Inflater();
+        ByteBuffer values;
+
+        inf.setInput(compressed);
+        try {
+            if (inf.inflate(raw) != raw.length) {
+                throw new IOException("Truncated tile at " + tile.x + ", " + tile.y + ".");
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException(ex);
+        } finally {
+            inf.end();
+        }
+        values = ByteBuffer.wrap(raw);
+        decodeChannel(values, tile, imgWidth, iterData);
+        if (channels == 2) {
+            decodeChannel(values, tile, imgWidth, distData);
+        }
+    }
+
+    private static List<Rectangle> createTiles(int width, int height) {
+        List<Rectangle> tiles = new ArrayList<>();
+
+        for (int y = 0; y < height; y += TILE_SIZE) {
+            for (int x = 0; x < width; x += TILE_SIZE) {
+                tiles.add(new Rectangle(x, y, Math.min(TILE_SIZE, width - x), Math.min(TILE_SIZE, height - y)));
+            }
+        }
+        return tiles;
+    }
+
+    static byte[] encodeTile(Rectangle tile, int imgWidth, float[] iterData, float[] distData) {
+        ByteBuffer raw = ByteBuffer.allocate(tile.width * tile.height * 4 * (distData == null ? 1 : 2));
+        Deflater d = new Deflater(Deflater.BEST_SPEED);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.capacity() / 4 + 64);
+        byte[] buf = new byte[1 << 16];
+
+        encodeChannel(raw, tile, imgWidth, iterData);
+        if (distData != null) {
+            encodeChannel(raw, tile, imgWidth, distData);
+        }
+        d.setInput(raw.array());
+        d.finish();
+        while (!d.finished()) {
+            out.write(buf, 0, d.deflate(buf));
+        }
+        d.end();
+        return out.toByteArray();
+    }
+
+    private static void encodeChannel(ByteBuffer raw, Rectangle tile, int imgWidth, float[] data) {
+        for (int j = tile.y; j < tile.y + tile.height; j++) {
+            int prev = 0;
+            for (int i = tile.x; i < tile.x + tile.width; i++) {
+                int bits = Float.floatToRawIntBits(data[j * imgWidth + i]);
+                raw.putInt(bits - prev);
+                prev = bits;
+            }
+        }
+    }
+
+    private static void decodeChannel(ByteBuffer values, Rectangle tile, int imgWidth, float[] data) {
+        for (int j = tile.y; j < tile.y + tile.height; j++) {
+            int bits = 0;
+            for (int i = tile.x; i < tile.x + tile.width; i++) {
+                bits += values.getInt();
+                if (data != null) {
+                    data[j * imgWidth + i] = Float.intBitsToFloat(bits);
+                }
+            }
+        }
+    }
+
+    private static String getString(ByteBuffer b) {
+        byte[] s = new byte[b.getShort() & 0xFFFF];
+
+        b.get(s);
+        return new String(s, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel c, ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            c.write(b);
+        }
+    }
+}
@@ -12,19 +12,24 @@
 package site.bsws.mandarin;
 
 import java.awt.Graphics;
-import java.awt.Image;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.awt.geom.AffineTransform;
-import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.imageio.ImageIO;
 import javax.swing.JLabel;
 import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 /**
  *
@@ -36,8 +41,28 @@ public class SettingsPanel extends javax.swing.JPanel implements Engine.Listener
         public Graphics getImagePanelGraphics();
         public JProgressBar getProgressBar();
         public JLabel getNotificationAreaLabel();
+
+        /**
+         * Called when a session has been opened, so that controls outside the panel can show the
+         * kernel and options it was rendered with.
+         */
+        public void sessionRestored(Kernel kernel, EnumSet<Engine.Parameters.Option> options);
     }
 
+    // Finished tiles are put on screen at most once every FRAME_INTERVAL milliseconds.
+    private static final int FRAME_INTERVAL = 33;
+    // Interactive frames are sized to render within FRAME_BUDGET milliseconds, but no smaller than
+    // MIN_SCALE of the output, and are re-rendered in full once input has been idle for
+    // REFINE_DELAY milliseconds.
+    private static final double FRAME_BUDGET = 50, MIN_SCALE = 0.125;
+    private static final int REFINE_DELAY = 300;
+    // Once a frame is finished and the pointer has rested for PREFETCH_DELAY milliseconds, the zoom
+    // targets under it and the views half a frame away on each side are rendered in the background.
+    private static final int PREFETCH_DELAY = 200;
+    // With the limit set to Auto, the engine picks one per frame of at most AUTO_LIMIT_CEILING.
+    private static final int AUTO_LIMIT_CEILING = 1 << 16;
+    // A selection rendered in detail gets DETAIL_FACTOR times the frame's iteration limit.
+    private static final int DETAIL_FACTOR = 4;
     private double imageRotation;
     private Rectangle outputSize;
     private double planeMinX, planeMinY, planeMaxX, planeMaxY, planeUnitX, planeUnitY, selMinX,
@@ -45,6 +70,19 @@ public class SettingsPanel extends javax.swing.JPanel implements Engine.Listener
     private Listener l;
     private boolean renderInProgress;
     private Engine.Statistics stats;
+    private EnumSet<Engine.Parameters.Option> renderOptions;
+    private Kernel kernel;
+    private final Object dirtyLock = new Object();
+    private Rectangle dirtyRegion;
+    private VolatileImage backBuffer;
+    private final Resampler resampler = new Resampler(Resampler.Filter.LANCZOS);
+    private Timer repaintTimer, refineTimer, prefetchTimer;
+    private boolean interactiveResolution, prefetchViews;
+    private Point pointer;
+    private double pointerZoomFactor;
+    private RenderScheduler scheduler;
+    private TileCache tileCache;
+    private double pixelThroughput;
 
     /**
      * Creates new form MandelbrotSettingsPanel
@@ -60,7 +98,83 @@ public class SettingsPanel extends javax.swing.JPanel implements Engine.Listener
         setSelRenRegion(planeMinX, planeMaxX, planeMinY, planeMaxY);
         setCurRenRegion(planeMinX, planeMaxX, planeMinY, planeMaxY);
         stats = new Engine.Statistics(0, 0, 0, 0, 0);
-        Engine.initialize(this);
+        renderOptions = EnumSet.noneOf(Engine.Parameters.Option.class);
+        kernel = MandelbrotKernel.INSTANCE;
+        repaintTimer = new Timer(FRAME_INTERVAL, new java.awt.event.ActionListener() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                blitDirtyRegion();
+            }
+        });
+        refineTimer = new Timer(REFINE_DELAY, new java.awt.event.ActionListener() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                refine();
+            }
+        });
+        refineTimer.setRepeats(false);
+        prefetchTimer = new Timer(PREFETCH_DELAY, new java.awt.event.ActionListener() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                prefetch();
+            }
+        });
+        prefetchTimer.setRepeats(false);
+        interactiveResolution = true;
+        prefetchViews = true;
+        scheduler = new RenderScheduler(this);
+        Engine.initialize(scheduler);
+        Engine.getTileStream().subscribe(new TileStream.Subscriber() {
+            private TileStream.Subscription subscription;
+            private long frame, covered;
+            private int shown;
+
+            @Override
+            public void onSubscribe(TileStream.Subscription s) {
+                subscription = s;
+                s.request(TileStream.DEFAULT_CAPACITY);
+            }
+
+            /*
+             * Shows how much of the frame being rendered is finished. Anti-aliasing sends the
+             * regions again, so the bar stays full while it runs.
+             */
+            @Override
+            public void onNext(TileStream.Tile t) {
+                final int percent;
+
+                if (t.getFrame() != frame) {
+                    frame = t.getFrame();
+                    covered = 0;
+                    shown = -1;
+                }
+                covered += (long) t.getRegion().width * t.getRegion().height;
+                percent = (int) Math.min(100,
+                        100 * covered / ((long) t.getFrameWidth() * t.getFrameHeight()));
+                if (percent != shown && !t.isCancelled()) {
+                    shown = percent;
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (renderInProgress && l != null) {
+                                l.getProgressBar().setIndeterminate(false);
+                                l.getProgressBar().setValue(percent);
+                            }
+                        }
+                    });
+                }
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                Logger.getLogger(SettingsPanel.class.getName()).log(Level.WARNING, null, t);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
     }
 
     public void setListener(Listener l) {
@@ -82,6 +196,72 @@ public class SettingsPanel extends javax.swing.JPanel implements Engine.Listener
         }
     }
 
+    public void setRenderOption(Engine.Parameters.Option o, boolean enabled) {
+        if (enabled) {
+            renderOptions.add(o);
+        } else {
+            renderOptions.remove(o);
+        }
+    }
+
+    public void setInteractiveResolution(boolean enabled) {
+        interactiveResolution = enabled;
+    }
+
+    public void setPrefetching(boolean enabled) {
+        prefetchViews = enabled;
+        if (enabled) {
+            prefetchTimer.restart();
+        } else {
+            prefetchTimer.stop();
+            scheduler.prefetch(new ArrayList<Engine.Parameters>());
+        }
+    }
+
+    /**
+     * Records where the pointer is and how far the wheel would zoom there, for prefetching.
+     */
+    public void setZoomTarget(Point p, double zoomFactor) {
+        pointer = p;
+        pointerZoomFactor = zoomFactor;
+        if (prefetchViews) {
+            prefetchTimer.restart();
+        }
+    }
+
+    public void setOrbitCheckpoint(File f) {
+        Engine.setOrbitCheckpoint(f);
+    }
+
+    /**
+     * Opens the tile cache in directory d, creating it if need be, in place of the current one.
+     */
+    public void setTileCacheDirectory(File d) {
+        TileCache c;
+
+        try {
+            c = TileCache.open(d, TileCache.DEFAULT_CAPACITY);
+        } catch (IOException ex) {
+            Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
+            l.getNotificationAreaLabel().setText("Could not open the tile cache in " + d.getPath() + ".");
+            return;
+        }
+        Engine.setTileCache(c);
+        if (tileCache != null) {
+            try {
+                tileCache.close();
+            } catch (IOException ex) {
+                Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        tileCache = c;
+        l.getNotificationAreaLabel().setText("Tiles will be cached in " + d.getPath() + ".");
+    }
+
+    public void setKernel(Kernel k) {
+        kernel = k;
+    }
+
     public void setOutputSize(Rectangle r) {
         outputSize = r;
         planeUnitX = (planeMaxX - planeMinX) / outputSize.width;
@@ -115,7 +295,27 @@ public class SettingsPanel extends javax.swing.JPanel implements Engine.Listener
             selMinX = selMinX - temp1;
             selMaxX = selMaxX + temp1;
         }
-        setSelRenRegion(selMinX, selMaxX, selMinY, selMaxY);
+        setRotatedSelRenRegion(selMinX, selMaxX, selMinY, selMaxY);
+    }
+
+    /*
+     * Takes a window measured along the current view's axes, as screen positions are, and moves its
+     * centre to where the view's rotation puts it, so that it renders at the same place on screen.
+     */
+    private void setRotatedSelRenRegion(double selMinX, double selMaxX, double selMinY, double selMaxY) {
+        double r[] = rotateRegion(selMinX, selMaxX, selMinY, selMaxY);
+
+        setSelRenRegion(r[0], r[1], r[2], r[3]);
+    }
+
+    private double[] rotateRegion(double selMinX, double selMaxX, double selMinY, double selMaxY) {
+        double dX, dY, shiftX, shiftY, cos = Math.cos(imageRotation), sin = Math.sin(imageRotation);
+
+        dX = (selMinX + selMaxX) / 2 - (planeMinX + planeMaxX) / 2;
+        dY = (selMinY + selMaxY) / 2 - (planeMinY + planeMaxY) / 2;
+        shiftX = (cos - 1) * dX - sin * dY;
+        shiftY = sin * dX + (cos - 1) * dY;
+        return new double[]{selMinX + shiftX, selMaxX + shiftX, selMinY + shiftY, selMaxY + shiftY};
     }
 
     private void setCurRenRegion(double planeMinX, double planeMaxX, double planeMinY, double planeMaxY) {
@@ -139,29 +339,93 @@ public class SettingsPanel extends javax.swing.JPanel implements Engine.Listener
     }
 
     public void startRendering() {
-        renderInProgress = true;
-        Engine.Parameters p;
+        refineTimer.stop();
+        startRendering(1, false);
+    }
+
+    /**
+     * Renders the selected region at a resolution that fits the frame budget, to be followed by a
+     * full-resolution render once input stops.
+     */
+    public void startInteractiveRendering() {
+        startInteractiveRendering(false);
+    }
+
+    /**
+     * Like startInteractiveRendering, for bursts of events such as resizes: only the last request of
+     * the burst is rendered.
+     */
+    public void startDebouncedRendering() {
+        startInteractiveRendering(true);
+    }
+
+    private void startInteractiveRendering(boolean debounce) {
+        double scale = 1;
+
+        if (interactiveResolution && pixelThroughput > 0) {
+            scale = Math.sqrt(FRAME_BUDGET * pixelThroughput / (outputSize.width * (double) outputSize.height));
+            scale = Math.max(MIN_SCALE, Math.min(1, scale));
+        }
+        if (scale < 1) {
+            refineTimer.restart();
+        } else {
+            refineTimer.stop();
+        }
+        startRendering(scale, debounce);
+    }
+
+    private void refine() {
+        if (selMinX != planeMinX || selMaxX != planeMaxX || selMinY != planeMinY || selMaxY != planeMaxY) {
+            return; // The user has selected a new region since; leave it to them.
+        }
+        startRendering(1, false);
+    }
 
+    private int getIterationLimit() {
         if (autoAdjustIterLimitCheckBox.isSelected()) {
-            int limit;
+            return AUTO_LIMIT_CEILING;
+        }
+        return Integer.parseInt(maxIterTextField.getText());
+    }
 
-            limit = Integer.parseInt(maxIterTextField.getText());
-            if (stats.minIterations > 0.125 * limit) {
-                maxIterTextField.setText(String.format("%d", (int) (stats.minIterations / 0.125 + 1)));
-            } else if (stats.meanIterations > 0 && stats.meanIterations < 0.125 * limit) {
-                maxIterTextField.setText(String.format("%d", (int) (stats.meanIterations * 8)));
-            }
+    private Engine.Parameters createParameters(double[] region, int width, int height, int limit,
+            EnumSet<Engine.Parameters.Option> options) {
+        if (autoAdjustIterLimitCheckBox.isSelected()) {
+            options = EnumSet.copyOf(options);
+            options.add(Engine.Parameters.Option.AUTOMATIC_ITERATIONS);
         }
+        return new Engine.Parameters(region[0], region[1], region[2], region[3], width, height, limit,
+                getColouringMethod((String) colMethComboBox.getSelectedItem()), kernel, options,
+                imageRotation);
+    }
 
+    private void startRendering(double scale, boolean debounce) {
+        Engine.Parameters p;
+        EnumSet<Engine.Parameters.Option> options;
+        double region[];
+        int limit = getIterationLimit();
+
+        if (!autoAdjustIterLimitCheckBox.isSelected()) {
+            maxIterTextField.setText(String.format("%d", limit));
+        }
         l.clearSelectionRectangle();
         setCurRenRegion(selMinX, selMaxX, selMinY, selMaxY);
-        p = new Engine.Parameters(planeMinX, planeMaxX, planeMinY, planeMaxY,
-                outputSize.width, outputSize.height, Integer.parseInt(maxIterTextField.getText()),
-                getColouringMethod((String) colMethComboBox
-                        .getSelectedItem()));
+        region = new double[]{planeMinX, planeMaxX, planeMinY, planeMaxY};
+        options = EnumSet.copyOf(renderOptions);
+        p = createParameters(region, outputSize.width, outputSize.height, limit, options);
+        if (scale < 1 && Engine.isPrefetched(p)) {
+            refineTimer.stop(); // Copying the prefetched frame beats any reduced-resolution one.
+        } else if (scale < 1) {
+            options.remove(Engine.Parameters.Option.ANTI_ALIASING);
+            p = createParameters(region, Math.max(1, (int) Math.ceil(outputSize.width * scale)),
+                    Math.max(1, (int) Math.ceil(outputSize.height * scale)), limit, options);
+        }
 
-        Engine.setParameters(p);
-        Engine.startRendering();
+        if (debounce) {
+            scheduler.submitDebounced(p);
+        } else {
+            scheduler.submit(p, true);
+        }
     }
 
     public void drawImage() {
@@ -170,12 +434,50 @@ public class SettingsPanel extends javax.swing.JPanel implements Engine.Listener
 
         g = l.getImagePanelGraphics();
         i = Engine.getImage();
-        if (i.getWidth() == outputSize.width && i.getHeight() == outputSize.height) {
-            g.drawImage(i, 0, 0, null);
-        } else {
-            g.drawImage(i.getScaledInstance(outputSize.width, outputSize.height,
-                    Image.SCALE_SMOOTH), 0, 0, null);
+        g.drawImage(resampler.resample(i, outputSize.width, outputSize.height), 0, 0, null);
+    }
+
+    /*
+     * Runs on the EDT. Copies the tiles finished since the last call from the engine's image into
+     * the back buffer, and only those rectangles from the back buffer onto the panel.
+     */
+    private void blitDirtyRegion() {
+        BufferedImage i;
+        Rectangle r;
+        GraphicsConfiguration gc;
+
+        synchronized (dirtyLock) {
+            r = dirtyRegion;
+            dirtyRegion = null;
+        }
+        i = Engine.getRenderImage();
+        if (r == null || i == null) {
+            return;
+        }
+        if (i.getWidth() != outputSize.width || i.getHeight() != outputSize.height) {
+            // A reduced-resolution interactive frame; it is small, so stretch all of it.
+            l.getImagePanelGraphics().drawImage(i, 0, 0, outputSize.width, outputSize.height, null);
+            return;
         }
+        gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration();
+        do {
+            int status = backBuffer == null ? VolatileImage.IMAGE_INCOMPATIBLE : backBuffer.validate(gc);
+
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE || backBuffer.getWidth() != i.getWidth()
+                    || backBuffer.getHeight() != i.getHeight()) {
+                backBuffer = gc.createCompatibleVolatileImage(i.getWidth(), i.getHeight());
+                r = new Rectangle(i.getWidth(), i.getHeight());
+            } else if (status == VolatileImage.IMAGE_RESTORED) {
+                r = new Rectangle(i.getWidth(), i.getHeight());
+            }
+            Graphics2D bg = backBuffer.createGraphics();
+            bg.drawImage(i, r.x, r.y, r.x + r.width, r.y + r.height, r.x, r.y, r.x + r.width,
+                    r.y + r.height, null);
+            bg.dispose();
+            l.getImagePanelGraphics().drawImage(backBuffer, r.x, r.y, r.x + r.width, r.y + r.height,
+                    r.x, r.y, r.x + r.width, r.y + r.height, null);
+        } while (backBuffer.contentsLost());
     }
 
     public void redrawImage() {
@@ -189,41 +491,51 @@ public class SettingsPanel extends javax.swing.JPanel implements Engine.Listener
         }
         l.clearSelectionRectangle();
         g.clearRect(0, 0, outputSize.width, outputSize.height);
-        if (i.getWidth() == outputSize.width && i.getHeight() == outputSize.height) {
-            g.drawImage(i, 0, 0, null);
-        } else {
-            g.drawImage(i.getScaledInstance(outputSize.width, outputSize.height,
-                    Image.SCALE_SMOOTH), 0, 0, null);
-        }
+        g.drawImage(resampler.resample(i, outputSize.width, outputSize.height), 0, 0, null);
+    }
 
+    /**
+     * Turns the view clockwise by rotation radians about its centre and renders it; the engine
+     * reuses whatever pixels of the previous frame the turned view still covers.
+     */
+    public void rotate(double rotation) {
+        imageRotation = Math.IEEEremainder(imageRotation + rotation, 2 * Math.PI);
+        setSelRenRegion(planeMinX, planeMaxX, planeMinY, planeMaxY);
+        startRendering();
     }
 
-    public void redrawImageRotated(double rotation) {
-        BufferedImage i, temp;
-        Graphics g;
-        AffineTransform t;
-        AffineTransformOp op;
+    /**
+     * Renders the part of the finished frame under selection, in panel coordinates, again with
+     * DETAIL_FACTOR times its iteration limit and with supersampling, and drops the selection.
+     */
+    public void renderSelectionInDetail(Rectangle selection) {
+        Engine.Parameters p = Engine.getParameters();
+        double scaleX, scaleY;
+        int x, y;
 
-        l.clearSelectionRectangle();
-        i = Engine.getImage();
-        if (i == null) {
+        if (p == null || selection.isEmpty()) {
             return;
         }
+        // A reduced-resolution frame is stretched over the panel.
+        scaleX = p.imgWidth / (double) outputSize.width;
+        scaleY = p.imgHeight / (double) outputSize.height;
+        x = (int) Math.floor(selection.x * scaleX);
+        y = (int) Math.floor(selection.y * scaleY);
+        refineTimer.stop();
+        setSelRenRegion(planeMinX, planeMaxX, planeMinY, planeMaxY);
+        scheduler.submitRegion(new Rectangle(x, y, (int) Math.ceil((selection.x + selection.width) * scaleX) - x,
+                (int) Math.ceil((selection.y + selection.height) * scaleY) - y),
+                (int) Math.min(Integer.MAX_VALUE, (long) p.maxIters * DETAIL_FACTOR), true);
+    }
 
-        imageRotation += rotation;
-        g = l.getImagePanelGraphics();
-
-        t = AffineTransform.getRotateInstance(imageRotation, (i.getWidth() - 1) / 2, (i.getHeight() - 1) / 2);
-        op = new AffineTransformOp(t, AffineTransformOp.TYPE_BILINEAR);
-        temp = op.filter(i, null);
+    public void zoom(Point p, double zoomFactor) {
+        double r[] = zoomRegion(p, zoomFactor);
 
-        g.drawImage(temp, 0, 0, null);
+        setSelRenRegion(r[0], r[1], r[2], r[3]);
+        startInteractiveRendering();
     }
 
-    public void zoom(Point p, double zoomFactor) {
-        if (renderInProgress) {
-            return;
-        }
+    private double[] zoomRegion(Point p, double zoomFactor) {
         double x, y, sizeX, sizeY;
         double rX, rY, aspectRatio;
 
@@ -242,59 +554,249 @@ public class SettingsPanel extends javax.swing.JPanel implements Engine.Listener
         x = planeMinX + planeUnitX * p.x - sizeX * rX;
         y = planeMaxY - planeUnitY * p.y - sizeY * (1 - rY);
 
-        setSelRenRegion(x, x + sizeX, y, y + sizeY);
-        startRendering();
+        return rotateRegion(x, x + sizeX, y, y + sizeY);
+    }
+
+    /*
+     * Runs on the EDT once the pointer has rested. Only a finished full-resolution frame of the
+     * current view is extended; the zoom targets come first, as the likeliest next views.
+     */
+    private void prefetch() {
+        List<Engine.Parameters> views = new ArrayList<>();
+        Engine.Parameters current = Engine.getParameters();
+        double width = planeMaxX - planeMinX, height = planeMaxY - planeMinY;
+        int limit;
+
+        if (!prefetchViews || !scheduler.isIdle() || refineTimer.isRunning() || current == null
+                || current.imgWidth != outputSize.width || current.imgHeight != outputSize.height
+                || current.hasOption(Engine.Parameters.Option.ORBIT_DENSITY)
+                || selMinX != planeMinX || selMaxX != planeMaxX || selMinY != planeMinY
+                || selMaxY != planeMaxY) {
+            return;
+        }
+        limit = getIterationLimit();
+        if (pointer != null && pointer.x >= 0 && pointer.x < outputSize.width && pointer.y >= 0
+                && pointer.y < outputSize.height) {
+            views.add(createParameters(zoomRegion(pointer, pointerZoomFactor), outputSize.width,
+                    outputSize.height, limit, renderOptions));
+            views.add(createParameters(zoomRegion(pointer, 1 / pointerZoomFactor), outputSize.width,
+                    outputSize.height, limit, renderOptions));
+        }
+        for (int d = 0; d < 4; d++) {
+            double dX = (d == 0 ? 0.5 : d == 1 ? -0.5 : 0) * width,
+                    dY = (d == 2 ? 0.5 : d == 3 ? -0.5 : 0) * height;
+            views.add(createParameters(rotateRegion(planeMinX + dX, planeMaxX + dX, planeMinY + dY,
+                    planeMaxY + dY), outputSize.width, outputSize.height, limit, renderOptions));
+        }
+        scheduler.prefetch(views);
     }
 
     public void resetRenderingRegion() {
+        imageRotation = 0;
         setSelRenRegion(-2.0, 1.0, -1.5, 1.5);
     }
 
+    /**
+     * Saves a copy of the finished render in the background, so that rendering goes on meanwhile;
+     * the notification area says when it is done.
+     */
     public void writeImageToFile(File f) {
-        BufferedImage i;
+        BufferedImage front = Engine.getImage();
 
-        i = Engine.getImage();
-        if (i == null) {
+        if (front != null) {
+            writeImageToFile(f, front.getWidth(), front.getHeight());
+        }
+    }
+
+    /**
+     * Like writeImageToFile(f), but scales the render to width x height with the Lanczos filter
+     * first.
+     */
+    public void writeImageToFile(final File f, final int width, final int height) {
+        final BufferedImage i;
+        BufferedImage front;
+
+        front = Engine.getImage();
+        if (front == null) {
             return;
         }
+        // The frame goes back to the engine's pool once another render finishes.
+        i = new BufferedImage(front.getWidth(), front.getHeight(), BufferedImage.TYPE_INT_RGB);
+        i.setData(front.getRaster());
+        l.getNotificationAreaLabel().setText("Saving the buffer to " + f.getPath() + "...");
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                boolean saved = false;
+
+                try {
+                    // A resampler of its own, since the display's hands out a buffer it reuses.
+                    PngWriter.write(new Resampler(Resampler.Filter.LANCZOS).resample(i, width, height), f);
+                    saved = true;
+                } catch (IOException ex) {
+                    Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
+                }
+                final String message = saved ? "Buffer saved to " + f.getPath() + "."
+                        : "Could not save the buffer to " + f.getPath() + ".";
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        l.getNotificationAreaLabel().setText(message);
+                    }
+                });
+            }
+        }, "Export").start();
+    }
+
+    /**
+     * Saves the finished render, with its iteration data, so that it can be reopened without
+     * iterating again. The file is written in the background, and the notification area tells
+     * whether it was.
+     */
+    public void writeSessionToFile(final File f) {
+        final Engine.Parameters p = Engine.getParameters();
+        final Engine.Statistics s = Engine.getStatistics();
+        final float[] iterData, distData;
+
+        if (renderInProgress || Engine.getIterationData() == null) {
+            l.getNotificationAreaLabel().setText("There is no finished render to save.");
+            return;
+        }
+        // As with images, the frame's data goes back to the engine's pool once another render
+        // finishes.
+        iterData = Engine.getIterationData().clone();
+        distData = Engine.getDistanceData() == null ? null : Engine.getDistanceData().clone();
+        l.getNotificationAreaLabel().setText("Saving the session to " + f.getPath() + "...");
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                boolean saved = false;
+
+                try {
+                    Session.write(f, p, s, iterData, distData);
+                    saved = true;
+                } catch (IOException ex) {
+                    Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
+                }
+                final String message = saved ? "Session saved to " + f.getPath() + "."
+                        : "Could not save the session to " + f.getPath() + ".";
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        l.getNotificationAreaLabel().setText(message);
+                    }
+                });
+            }
+        }, "Export").start();
+    }
+
+    public void readSessionFromFile(File f) {
+        Session s;
+        Engine.Parameters p;
+
         try {
-            ImageIO.write(i, "png", f);
+            s = Session.open(f);
         } catch (IOException ex) {
             Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
+            l.getNotificationAreaLabel().setText("Could not read " + f.getName() + ".");
+            return;
         }
+        p = s.getParameters();
+        refineTimer.stop();
+        l.clearSelectionRectangle();
+        setCurRenRegion(p.planeMinX, p.planeMaxX, p.planeMinY, p.planeMaxY);
+        setSelRenRegion(p.planeMinX, p.planeMaxX, p.planeMinY, p.planeMaxY);
+        maxIterTextField.setText(String.format("%d", p.maxIters));
+        kernel = p.kernel;
+        imageRotation = p.rotation;
+        renderOptions = p.getOptions();
+        autoAdjustIterLimitCheckBox.setSelected(renderOptions.remove(Engine.Parameters.Option.AUTOMATIC_ITERATIONS));
+        l.sessionRestored(kernel, EnumSet.copyOf(renderOptions));
+        scheduler.submitRestore(s);
     }
 
     @Override
     public void renderingBegun() {
-        l.getProgressBar().setIndeterminate(true);
-        l.getNotificationAreaLabel().setText("Rendering begun.");
+        synchronized (dirtyLock) {
+            dirtyRegion = null;
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                renderInProgress = true;
+                repaintTimer.start();
+                l.getProgressBar().setIndeterminate(true);
+                l.getNotificationAreaLabel().setText("Rendering begun.");
+            }
+        });
     }
 
+    /*
+     * Called from the engine's worker threads, which only record the region; the timer puts it on
+     * screen from the EDT.
+     */
     @Override
     public void regionRendered(Rectangle region) {
-        // l.getNotificationAreaLabel().setText("Region rendered: " + region + ".");
+        synchronized (dirtyLock) {
+            if (dirtyRegion == null) {
+                dirtyRegion = new Rectangle(region);
+            } else {
+                dirtyRegion.add(region);
+            }
+        }
     }
 
     @Override
     public void renderingEnded() {
-        drawImage();
-        l.getProgressBar().setIndeterminate(false);
-        l.getNotificationAreaLabel().setText("Rendered image.");
-        renderInProgress = false;
+        final boolean cancelled = Engine.isCancelled();
+
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                repaintTimer.stop();
+                blitDirtyRegion();
+                renderInProgress = !scheduler.isIdle();
+                l.getProgressBar().setIndeterminate(renderInProgress);
+                if (cancelled) {
+                    l.getNotificationAreaLabel().setText("Rendering superseded.");
+                } else if (prefetchViews) {
+                    prefetchTimer.restart();
+                }
+            }
+        });
     }
 
     @Override
     public void errorOccurred() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                l.getNotificationAreaLabel().setText("Rendering failed.");
+            }
+        });
     }
 
     @Override
     public void statsGenerated() {
-
-        stats = Engine.getStatistics();
-
-        sScaleLabel.setText(String.format("%.3Gx", 3 / (planeMaxX - planeMinX)));
-        l.getNotificationAreaLabel().setText(String.format("Rendered in %.3f ms.", stats.renderingTime));
+        final Engine.Statistics s = Engine.getStatistics();
+        final int pixels = Engine.getImage().getWidth() * Engine.getImage().getHeight();
+
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                stats = s;
+                if (stats.renderingTime > 0) {
+                    pixelThroughput = pixels / stats.renderingTime;
+                }
+
+                sScaleLabel.setText(String.format("%.3Gx", 3 / (planeMaxX - planeMinX)));
+                if (stats.iterationLimit > 0) {
+                    maxIterTextField.setText(String.format("%d", stats.iterationLimit));
+                }
+                l.getNotificationAreaLabel().setText(String.format("Rendered in %.3f ms (%s).",
+                        stats.renderingTime, stats.kernelName));
+            }
+        });
     }
 
     /**
@@ -512,9 +1014,7 @@ public class SettingsPanel extends javax.swing.JPanel implements Engine.Listener
     }// </editor-fold>//GEN-END:initComponents
 
     private void drawButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_drawButtonActionPerformed
-        if (!renderInProgress) {
-            startRendering();
-        }
+        startRendering();
     }//GEN-LAST:event_drawButtonActionPerformed
 
     private void colMethComboBoxActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_colMethComboBoxActionPerformed
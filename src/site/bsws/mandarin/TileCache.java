@@ -0,0 +1,346 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  TileCache.java
+ *
+ *  Keeps rendered tiles on disk, so that views seen before come back without iterating.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.Rectangle;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tiles are kept deflated as in a Session, keyed by everything that decides their values: the
+ * kernel, the iteration limit, whether there are distance estimates, and the tile's place on a
+ * grid fixed to the plane. The grid has the view's pixel size, and its lines run through whole
+ * multiples of it, offset by the view's sub-pixel phase to within 1 / PHASE_STEPS of a pixel; a
+ * tile is keyed by the grid position of its corner and its size. Views that differ by whole-pixel
+ * pans thus share tiles, with values that agree to within rounding, as reused pixels do. Only views
+ * without rotation lie on such a grid.
+ *
+ * Records are appended to numbered segment files; once the segments together exceed the capacity,
+ * the oldest is deleted whole. A hit in the oldest segment is appended again, so tiles in use
+ * outlive the ones that are not.
+ *
+ * The index is a memory-mapped open-addressing table from a hash of the key to the record's
+ * segment, offset and length. A slot that points into a deleted segment is free for reuse. The
+ * record holds the key as well, so a hash collision reads as a miss. The directory is locked
+ * while open, so one process at a time can use it.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class TileCache {
+
+    public static final long DEFAULT_CAPACITY = 1L << 30;
+    private static final int MAGIC = 0x4D4E5443, VERSION = 3, HEADER_SIZE = 32, SLOT_SIZE = 24,
+            SLOT_COUNT = 1 << 18, MAX_PROBES = 64;
+    // Views more than GRID_LIMIT pixels from the plane's origin cannot place their phase to within
+    // 1 / PHASE_STEPS of a pixel in a double.
+    private static final long PHASE_STEPS = 1 << 12, GRID_LIMIT = 1L << 36;
+    // Each segment holds about 1 / SEGMENTS_PER_CAPACITY of the capacity, but no less than
+    // MIN_SEGMENT_SIZE.
+    private static final int SEGMENTS_PER_CAPACITY = 16;
+    private static final long MIN_SEGMENT_SIZE = 1 << 20;
+    private final File directory;
+    private final long capacity, segmentSize;
+    private final FileChannel indexChannel;
+    private final FileLock lock;
+    private final MappedByteBuffer index;
+    private final TreeMap<Integer, FileChannel> segments = new TreeMap<>();
+    private long totalSize, displaced;
+    private int oldest, current;
+
+    private TileCache(File directory, long capacity) throws IOException {
+        File[] files;
+
+        this.directory = directory;
+        this.capacity = capacity;
+        segmentSize = Math.max(MIN_SEGMENT_SIZE, capacity / SEGMENTS_PER_CAPACITY);
+        indexChannel = FileChannel.open(new File(directory, "index").toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        lock = indexChannel.tryLock();
+        if (lock == null) {
+            indexChannel.close();
+            throw new IOException("The tile cache in " + directory + " is in use.");
+        }
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) SLOT_COUNT * SLOT_SIZE);
+        if (index.getInt(0) != MAGIC || index.getInt(4) != VERSION || index.getInt(8) != SLOT_COUNT) {
+            // New, or written by another version: start again.
+            for (int p = 0; p < index.capacity(); p += 8) {
+                index.putLong(p, 0);
+            }
+            index.putInt(0, MAGIC);
+            index.putInt(4, VERSION);
+            index.putInt(8, SLOT_COUNT);
+            index.putInt(12, 0);
+            index.putInt(16, 0);
+        }
+        oldest = index.getInt(12);
+        current = index.getInt(16);
+        files = directory.listFiles();
+        for (File f : files == null ? new File[0] : files) {
+            int id = segmentId(f.getName());
+            if (id < 0) {
+                continue;
+            }
+            if (id < oldest || id > current) {
+                f.delete();
+            } else {
+                FileChannel c = FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                segments.put(id, c);
+                totalSize += c.size();
+            }
+        }
+        if (!segments.containsKey(current)) {
+            segments.put(current, openSegment(current));
+        }
+    }
+
+    /**
+     * Opens the cache in directory, creating it if need be, and keeps it to about capacity bytes.
+     */
+    public static TileCache open(File directory, long capacity) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory + ".");
+        }
+        return new TileCache(directory, capacity);
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public synchronized void close() throws IOException {
+        index.force();
+        for (FileChannel c : segments.values()) {
+            c.close();
+        }
+        segments.clear();
+        lock.release();
+        indexChannel.close();
+    }
+
+    /**
+     * Returns the column and row of the plane grid of p's pixel size that p's pixel (0, 0) lies
+     * nearest, and its offset from them in 1 / PHASE_STEPS of a pixel, or null if p lies on no grid
+     * the cache can use.
+     */
+    static long[] gridOrigin(Engine.Parameters p) {
+        double col, row;
+
+        if (p.colStepI != 0 || p.rowStepR != 0 || p.colStepR == 0 || p.rowStepI == 0) {
+            return null;
+        }
+        col = p.originR / p.colStepR;
+        row = p.originI / p.rowStepI;
+        if (!(Math.abs(col) < GRID_LIMIT) || !(Math.abs(row) < GRID_LIMIT)) {
+            return null;
+        }
+        return new long[]{(long) Math.rint(col), (long) Math.rint(row),
+            (long) Math.rint((col - Math.rint(col)) * PHASE_STEPS),
+            (long) Math.rint((row - Math.rint(row)) * PHASE_STEPS)};
+    }
+
+    /**
+     * Reads the cached values of tile, rendered from p with kernel k, into the full-frame arrays.
+     * Returns false if the cache does not hold it. p must lie on a grid; see gridOrigin.
+     */
+    boolean read(Engine.Parameters p, Kernel k, Rectangle tile, float[] iterData, float[] distData)
+            throws IOException {
+        byte key[] = key(p, k, tile, distData != null), data[];
+        long slot[] = find(hash(key));
+
+        if (slot == null || (data = readRecord((int) slot[0], slot[1], (int) slot[2], key)) == null) {
+            return false;
+        }
+        Session.decodeTile(data, tile, p.imgWidth, distData == null ? 1 : 2, iterData, distData);
+        synchronized (this) {
+            if (slot[0] == oldest && slot[0] != current) {
+                append(key, data);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores tile, rendered from p with kernel k.
+     */
+    void write(Engine.Parameters p, Kernel k, Rectangle tile, float[] iterData, float[] distData)
+            throws IOException {
+        append(key(p, k, tile, distData != null), Session.encodeTile(tile, p.imgWidth, iterData, distData));
+    }
+
+    private static byte[] key(Engine.Parameters p, Kernel k, Rectangle tile, boolean distances)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        long grid[] = gridOrigin(p);
+
+        if (grid == null) {
+            throw new IOException("The view lies on no grid the tile cache can use.");
+        }
+        out.writeUTF(k.getSpec());
+        out.writeInt(p.maxIters);
+        out.writeBoolean(distances);
+        out.writeDouble(p.colStepR);
+        out.writeDouble(p.rowStepI);
+        out.writeLong(grid[2]);
+        out.writeLong(grid[3]);
+        out.writeLong(grid[0] + tile.x);
+        out.writeLong(grid[1] + tile.y);
+        out.writeInt(tile.width);
+        out.writeInt(tile.height);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /*
+     * 64-bit FNV-1a; 0 marks an empty slot, so it is never returned.
+     */
+    private static long hash(byte[] key) {
+        long h = 0xCBF29CE484222325L;
+
+        for (byte b : key) {
+            h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    /*
+     * Returns the segment, offset and length of the live record with hash h, or null.
+     */
+    private synchronized long[] find(long h) {
+        for (int n = 0, s = (int) h & (SLOT_COUNT - 1); n < MAX_PROBES; n++, s = (s + 1) & (SLOT_COUNT - 1)) {
+            int at = HEADER_SIZE + s * SLOT_SIZE;
+            long slotHash = index.getLong(at);
+
+            if (slotHash == 0) {
+                return null;
+            }
+            if (slotHash == h && index.getInt(at + 8) >= oldest) {
+                return new long[]{index.getInt(at + 8), index.getInt(at + 12), index.getInt(at + 16)};
+            }
+        }
+        return null;
+    }
+
+    private byte[] readRecord(int segment, long offset, int length, byte[] key) throws IOException {
+        FileChannel c;
+        ByteBuffer b = ByteBuffer.allocate(length);
+
+        synchronized (this) {
+            c = segments.get(segment);
+        }
+        if (c == null) {
+            return null;
+        }
+        try {
+            while (b.hasRemaining()) {
+                if (c.read(b, offset + b.position()) < 0) {
+                    return null;
+                }
+            }
+        } catch (IOException ex) {
+            // The segment was deleted while being read.
+            return null;
+        }
+        b.flip();
+        if (b.getInt() != key.length || b.remaining() < key.length + 4) {
+            return null;
+        }
+        byte[] stored = new byte[key.length], data;
+        b.get(stored);
+        if (!Arrays.equals(stored, key) || b.getInt() != b.remaining()) {
+            return null;
+        }
+        data = new byte[b.remaining()];
+        b.get(data);
+        return data;
+    }
+
+    private synchronized void append(byte[] key, byte[] data) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(8 + key.length + data.length);
+        FileChannel c = segments.get(current);
+        long offset = c.size(), h = hash(key);
+        int slot = -1;
+
+        record.putInt(key.length).put(key).putInt(data.length).put(data).flip();
+        if (offset > 0 && offset + record.remaining() > segmentSize) {
+            current++;
+            c = openSegment(current);
+            segments.put(current, c);
+            offset = 0;
+        }
+        while (record.hasRemaining()) {
+            c.write(record, offset + record.position());
+        }
+        totalSize += record.capacity();
+        for (int n = 0, s = (int) h & (SLOT_COUNT - 1); n < MAX_PROBES; n++, s = (s + 1) & (SLOT_COUNT - 1)) {
+            int at = HEADER_SIZE + s * SLOT_SIZE;
+            long slotHash = index.getLong(at);
+
+            if (slotHash == 0 || slotHash == h || index.getInt(at + 8) < oldest) {
+                slot = at;
+                break;
+            }
+            if (slot < 0 || index.getInt(at + 8) < index.getInt(slot + 8)) {
+                slot = at;
+            }
+            if (n == MAX_PROBES - 1) {
+                // Every slot in reach holds a live record; the one in the oldest segment gives way.
+                displaced++;
+                Logger.getLogger(TileCache.class.getName()).log(Level.FINE,
+                        "Tile cache index full; displaced a record of segment {0} ({1} so far).",
+                        new Object[]{index.getInt(slot + 8), displaced});
+            }
+        }
+        index.putInt(slot + 8, current);
+        index.putInt(slot + 12, (int) offset);
+        index.putInt(slot + 16, record.capacity());
+        index.putLong(slot, h);
+        while (totalSize > capacity && oldest < current) {
+            FileChannel old = segments.remove(oldest);
+            if (old != null) {
+                totalSize -= old.size();
+                old.close();
+            }
+            new File(directory, segmentName(oldest)).delete();
+            oldest++;
+        }
+        index.putInt(12, oldest);
+        index.putInt(16, current);
+    }
+
+    private FileChannel openSegment(int id) throws IOException {
+        return FileChannel.open(new File(directory, segmentName(id)).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static String segmentName(int id) {
+        return String.format("segment-%08d.dat", id);
+    }
+
+    private static int segmentId(String name) {
+        if (!name.matches("segment-\\d{8}\\.dat")) {
+            return -1;
+        }
+        return Integer.parseInt(name.substring(8, 16));
+    }
+}
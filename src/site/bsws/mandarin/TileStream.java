@@ -0,0 +1,333 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  TileStream.java
+ *
+ *  Publishes the regions Engine finishes, with their pixels, to subscribers that pace themselves.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.Rectangle;
+import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plays the part of a java.util.concurrent.Flow.Publisher, which Java 8 lacks, and the nested
+ * interfaces follow Flow's: a subscriber is sent onSubscribe, then no more onNext calls than it has
+ * requested, then onError or onComplete, all from one thread at a time. Tiles are copied out of the
+ * frame by the worker that finished them and handed to subscribers on the stream's own threads, so
+ * workers never wait on a subscriber and a slow subscriber takes no time from rendering.
+ *
+ * Tiles a subscriber has not requested yet wait in its subscription, which holds at most the
+ * capacity it subscribed with. When it is full, the oldest tile is dropped to make room, so a
+ * subscriber that falls behind loses the older frames' tiles first and is left with the latest
+ * ones; getDropped tells how many it lost.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class TileStream {
+
+    public static interface Subscriber {
+        public void onSubscribe(Subscription s);
+        public void onNext(Tile t);
+        public void onError(Throwable t);
+        public void onComplete();
+    }
+
+    public static interface Subscription {
+        public void request(long n);
+        public void cancel();
+
+        /**
+         * Returns the number of tiles dropped from this subscription because it was full.
+         */
+        public long getDropped();
+    }
+
+    /**
+     * The pixels and smooth iteration counts of one finished region, row by row, or the end of a
+     * frame, which has an empty region and the frame's total time.
+     */
+    public static final class Tile {
+
+        private final long frame, nanos;
+        private final int frameWidth, frameHeight;
+        private final Rectangle region;
+        private final int pixels[];
+        private final float iterations[];
+        private final boolean frameEnd, cancelled;
+
+        private Tile(long frame, int frameWidth, int frameHeight, Rectangle region, int[] pixels,
+                float[] iterations, long nanos, boolean frameEnd, boolean cancelled) {
+            this.frame = frame;
+            this.frameWidth = frameWidth;
+            this.frameHeight = frameHeight;
+            this.region = region;
+            this.pixels = pixels;
+            this.iterations = iterations;
+            this.nanos = nanos;
+            this.frameEnd = frameEnd;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * Returns the number of the frame, counted from 1, that the tile belongs to. Anti-aliasing
+         * sends a frame's regions a second time.
+         */
+        public long getFrame() {
+            return frame;
+        }
+
+        public int getFrameWidth() {
+            return frameWidth;
+        }
+
+        public int getFrameHeight() {
+            return frameHeight;
+        }
+
+        public Rectangle getRegion() {
+            return new Rectangle(region);
+        }
+
+        public int getRGB(int x, int y) {
+            return pixels[(y - region.y) * region.width + x - region.x];
+        }
+
+        public float getIterations(int x, int y) {
+            return iterations[(y - region.y) * region.width + x - region.x];
+        }
+
+        /**
+         * Copies the region's pixels, row by row, into dst from offset on.
+         */
+        public void copyPixels(int[] dst, int offset) {
+            System.arraycopy(pixels, 0, dst, offset, pixels.length);
+        }
+
+        public void copyIterations(float[] dst, int offset) {
+            System.arraycopy(iterations, 0, dst, offset, iterations.length);
+        }
+
+        /**
+         * Returns the nanoseconds the region took to render, or for the end of a frame, the whole
+         * frame.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        public boolean isFrameEnd() {
+            return frameEnd;
+        }
+
+        /**
+         * Tells, for the end of a frame, whether the frame was cancelled before it was finished.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    public static final int DEFAULT_CAPACITY = 256;
+    private static final ExecutorService delivery = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "TileStream");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    private final CopyOnWriteArrayList<Delivery> deliveries = new CopyOnWriteArrayList<>();
+    private final AtomicLong frames = new AtomicLong();
+    private volatile long frame;
+    private volatile int frameWidth, frameHeight;
+
+    public void subscribe(Subscriber s) {
+        subscribe(s, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Subscribes s with room for capacity tiles it has not requested yet.
+     */
+    public void subscribe(Subscriber s, int capacity) {
+        Delivery d;
+
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1.");
+        }
+        d = new Delivery(s, capacity);
+        deliveries.add(d);
+        s.onSubscribe(d);
+    }
+
+    void beginFrame(int width, int height) {
+        frameWidth = width;
+        frameHeight = height;
+        frame = frames.incrementAndGet();
+    }
+
+    /**
+     * Copies region out of the frame for every subscriber. Called by the worker that finished it.
+     */
+    void publish(Rectangle region, int[] buffer, float[] iterData, long nanos) {
+        int pixels[], width = frameWidth;
+        float iterations[];
+
+        if (deliveries.isEmpty()) {
+            return;
+        }
+        pixels = new int[region.width * region.height];
+        iterations = new float[pixels.length];
+        for (int j = 0; j < region.height; j++) {
+            System.arraycopy(buffer, (region.y + j) * width + region.x, pixels, j * region.width,
+                    region.width);
+            System.arraycopy(iterData, (region.y + j) * width + region.x, iterations,
+                    j * region.width, region.width);
+        }
+        offer(new Tile(frame, width, frameHeight, new Rectangle(region), pixels, iterations, nanos,
+                false, false));
+    }
+
+    void endFrame(long nanos, boolean cancelled) {
+        if (!deliveries.isEmpty()) {
+            offer(new Tile(frame, frameWidth, frameHeight, new Rectangle(), new int[0], new float[0],
+                    nanos, true, cancelled));
+        }
+    }
+
+    /**
+     * Sends onComplete to every subscriber once it has been sent what it buffered.
+     */
+    void close() {
+        for (Delivery d : deliveries) {
+            d.completed = true;
+            d.schedule();
+        }
+    }
+
+    private void offer(Tile t) {
+        for (Delivery d : deliveries) {
+            d.offer(t);
+            d.schedule();
+        }
+    }
+
+    /*
+     * One subscription. Whichever thread moves wip from 0 runs the drain loop; the others only
+     * leave it more to do, so signals to the subscriber never overlap.
+     */
+    private final class Delivery implements Subscription, Runnable {
+
+        final Subscriber subscriber;
+        final int capacity;
+        final ArrayDeque<Tile> queue = new ArrayDeque<>();
+        final AtomicLong requested = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+        volatile Throwable failure;
+        volatile boolean completed, cancelled;
+        private long dropped;
+
+        Delivery(Subscriber subscriber, int capacity) {
+            this.subscriber = subscriber;
+            this.capacity = capacity;
+        }
+
+        synchronized void offer(Tile t) {
+            if (queue.size() == capacity) {
+                queue.poll();
+                dropped++;
+            }
+            queue.add(t);
+        }
+
+        synchronized Tile poll() {
+            return queue.poll();
+        }
+
+        synchronized boolean isEmpty() {
+            return queue.isEmpty();
+        }
+
+        @Override
+        public synchronized long getDropped() {
+            return dropped;
+        }
+
+        @Override
+        public void request(long n) {
+            long r, next;
+
+            if (n <= 0) {
+                failure = new IllegalArgumentException("Non-positive request: " + n);
+            } else {
+                do {
+                    r = requested.get();
+                    next = r + n < 0 ? Long.MAX_VALUE : r + n;
+                } while (!requested.compareAndSet(r, next));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            deliveries.remove(this);
+            synchronized (this) {
+                queue.clear();
+            }
+        }
+
+        void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                delivery.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            do {
+                try {
+                    drain();
+                } catch (RuntimeException ex) {
+                    Logger.getLogger(TileStream.class.getName()).log(Level.SEVERE, null, ex);
+                    cancel();
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private void drain() {
+            Tile t;
+
+            while (!cancelled) {
+                if (failure != null) {
+                    cancel();
+                    subscriber.onError(failure);
+                    return;
+                }
+                if (requested.get() == 0 || (t = poll()) == null) {
+                    break;
+                }
+                if (requested.get() != Long.MAX_VALUE) {
+                    requested.decrementAndGet();
+                }
+                subscriber.onNext(t);
+            }
+            if (completed && !cancelled && isEmpty()) {
+                cancel();
+                subscriber.onComplete();
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  WorkerPool.java
+ *
+ *  Shares the cores between interactive renders and background work such as exports and batches.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Threads are kept between jobs, but only as many as there are cores may compute at once: a worker
+ * holds one of that many slots while it runs. Interactive workers waiting for a slot are given one
+ * before any background worker is, and a background worker that calls checkpoint between its work
+ * units gives its slot up while interactive ones are waiting. Interactive work thus takes over the
+ * cores within a unit of the background work (a tile or a band), and background work goes on as
+ * soon as it leaves any free.
+ *
+ * Workers must not wait for other workers while holding a slot.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class WorkerPool {
+
+    public static enum Priority {
+
+        INTERACTIVE,
+        BACKGROUND
+    }
+
+    private static final ExecutorService threads = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "WorkerPool");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    private static final ThreadLocal<Priority> held = new ThreadLocal<>();
+    private static final Object lock = new Object();
+    private static int freeSlots = Runtime.getRuntime().availableProcessors(), interactiveWaiting;
+
+    private WorkerPool() {
+    }
+
+    /**
+     * Runs work on count workers of priority p; the returned latch opens once all have finished.
+     */
+    public static CountDownLatch start(int count, final Priority p, final Runnable work) {
+        final CountDownLatch latch = new CountDownLatch(count);
+
+        for (int n = 0; n < count; n++) {
+            threads.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runHolding(p, work);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+        return latch;
+    }
+
+    /**
+     * Runs task on one worker of priority p.
+     */
+    public static void execute(final Priority p, final Runnable task) {
+        threads.execute(new Runnable() {
+            @Override
+            public void run() {
+                runHolding(p, task);
+            }
+        });
+    }
+
+    /**
+     * Called by workers between units of work. A background worker waits here, without its slot,
+     * for as long as interactive workers want the cores.
+     */
+    public static void checkpoint() {
+        if (held.get() != Priority.BACKGROUND) {
+            return;
+        }
+        synchronized (lock) {
+            if (interactiveWaiting == 0) {
+                return;
+            }
+            freeSlots++;
+            lock.notifyAll();
+        }
+        acquire(Priority.BACKGROUND);
+    }
+
+    private static void runHolding(Priority p, Runnable work) {
+        acquire(p);
+        held.set(p);
+        try {
+            work.run();
+        } finally {
+            held.remove();
+            synchronized (lock) {
+                freeSlots++;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private static void acquire(Priority p) {
+        boolean interrupted = false;
+
+        synchronized (lock) {
+            if (p == Priority.INTERACTIVE) {
+                interactiveWaiting++;
+            }
+            while (freeSlots == 0 || p == Priority.BACKGROUND && interactiveWaiting > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (p == Priority.INTERACTIVE) {
+                interactiveWaiting--;
+            }
+            freeSlots--;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  OrbitDensityTest.java
+ *
+ *  Checks that orbit density checkpoints restore the grid exactly, and only for the same view.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/**
+ * Samples orbits on one thread, checkpoints and reads the checkpoint back, at sizes that do and do
+ * not fill the last stripe of the grid. The grid and sample count must come back bit for bit, and
+ * a run resumed from a checkpoint must end with exactly the grid of a run that went through
+ * without one. A checkpoint of another view must be ignored and a file of another kind refused.
+ * Runs as a plain program and exits with status 1 if any check fails.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class OrbitDensityTest {
+
+    private static final int BATCH = 2000;
+    private static int checks, failures;
+
+    private OrbitDensityTest() {
+    }
+
+    private static void check(boolean passed, String what) {
+        checks++;
+        if (!passed) {
+            failures++;
+            System.out.println("FAIL: " + what);
+        }
+    }
+
+    private static Engine.Parameters view(int width, int height, int maxIters) {
+        return new Engine.Parameters(-2, 1, -1.5, 1.5, width, height, maxIters,
+                Engine.Parameters.ColouringMethod.REGULAR, MandelbrotKernel.INSTANCE,
+                EnumSet.of(Engine.Parameters.Option.ORBIT_DENSITY), 0);
+    }
+
+    private static void probe(OrbitDensity d, int maxIters) {
+        double orbit[] = new double[2 * maxIters];
+
+        for (int row = 0; row < OrbitDensity.getCellRows(); row++) {
+            d.probeRow(row, orbit);
+        }
+        d.finishProbing();
+    }
+
+    private static void sample(OrbitDensity d, int maxIters, int from, int to) {
+        OrbitDensity.Hits hits = new OrbitDensity.Hits();
+        double orbit[] = new double[2 * maxIters];
+        Engine.Statistics stats = new Engine.Statistics(maxIters, 0, 0, 0, 0);
+
+        for (int batch = from; batch < to; batch++) {
+            d.sample(batch, BATCH, hits, orbit, stats);
+        }
+        d.merge(hits);
+    }
+
+    private static double[] density(OrbitDensity d) throws ReflectiveOperationException {
+        Field f = OrbitDensity.class.getDeclaredField("density");
+
+        f.setAccessible(true);
+        return (double[]) f.get(d);
+    }
+
+    private static void checkRoundTrip(int width, int height, boolean bounded)
+            throws IOException, ReflectiveOperationException {
+        String what = width + "x" + height + (bounded ? " bounded" : "");
+        int maxIters = 200;
+        Engine.Parameters p = view(width, height, maxIters);
+        OrbitDensity d = new OrbitDensity(p, p.kernel, bounded), r;
+        File f = File.createTempFile("OrbitDensityTest", ".ckpt");
+
+        try {
+            probe(d, maxIters);
+            sample(d, maxIters, 0, 10);
+            check(Arrays.stream(density(d)).sum() > 0, what + ": orbits plotted");
+            d.writeCheckpoint(f);
+            r = OrbitDensity.readCheckpoint(f, p, p.kernel, bounded);
+            check(r != null, what + ": checkpoint accepted");
+            if (r != null) {
+                check(r.getSamples() == d.getSamples(), what + ": sample count");
+                check(Arrays.equals(density(r), density(d)), what + ": grid");
+            }
+            check(OrbitDensity.readCheckpoint(f, view(width, height, maxIters + 1), p.kernel, bounded) == null,
+                    what + ": ignored for another iteration limit");
+            check(OrbitDensity.readCheckpoint(f, p, p.kernel, !bounded) == null,
+                    what + ": ignored for the other orbits");
+            check(OrbitDensity.readCheckpoint(f, p, BurningShipKernel.INSTANCE, bounded) == null,
+                    what + ": ignored for another kernel");
+        } finally {
+            f.delete();
+        }
+    }
+
+    /*
+     * The same batches, sampled straight through and with a checkpoint and fresh probing halfway,
+     * add the same hits to every pixel in the same order.
+     */
+    private static void checkResume() throws IOException, ReflectiveOperationException {
+        int maxIters = 300;
+        Engine.Parameters p = view(320, 240, maxIters);
+        OrbitDensity whole = new OrbitDensity(p, p.kernel, false), first = new OrbitDensity(p, p.kernel, false),
+                resumed;
+        File f = File.createTempFile("OrbitDensityTest", ".ckpt");
+
+        try {
+            probe(whole, maxIters);
+            sample(whole, maxIters, 0, 20);
+            probe(first, maxIters);
+            sample(first, maxIters, 0, 10);
+            first.writeCheckpoint(f);
+            resumed = OrbitDensity.readCheckpoint(f, p, p.kernel, false);
+            probe(resumed, maxIters);
+            sample(resumed, maxIters, 10, 20);
+            check(resumed.getSamples() == whole.getSamples(), "resumed run: sample count");
+            check(Arrays.equals(density(resumed), density(whole)), "resumed run: grid");
+        } finally {
+            f.delete();
+        }
+    }
+
+    private static void checkRefused() throws IOException {
+        File f = File.createTempFile("OrbitDensityTest", ".ckpt");
+        Engine.Parameters p = view(10, 10, 10);
+        boolean refused;
+
+        try {
+            try (FileOutputStream out = new FileOutputStream(f)) {
+                out.write("not a checkpoint".getBytes("US-ASCII"));
+            }
+            try {
+                OrbitDensity.readCheckpoint(f, p, p.kernel, false);
+                refused = false;
+            } catch (IOException ex) {
+                refused = true;
+            }
+            check(refused, "file of another kind");
+        } finally {
+            f.delete();
+        }
+    }
+
+    /**
+     * @param args unused
+     */
+    public static void main(String args[]) throws IOException, ReflectiveOperationException {
+        checkRoundTrip(1, 1, false);
+        checkRoundTrip(97, 61, false);
+        checkRoundTrip(256, 256, true);
+        checkRoundTrip(640, 480, false);
+        checkResume();
+        checkRefused();
+        System.out.println(checks + " checks, " + failures + " failed.");
+        System.exit(failures > 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  PngWriterTest.java
+ *
+ *  Checks that PngWriter's files are valid PNGs holding exactly the pixels written.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import javax.imageio.ImageIO;
+
+/**
+ * Every file is checked twice: decoded by ImageIO and compared pixel for pixel with the image
+ * written, and taken apart chunk by chunk, verifying each CRC and inflating the image data, which
+ * verifies the Adler-32 combined from the bands'. Runs as a plain program and exits with status 1
+ * if any check fails.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class PngWriterTest {
+
+    private static int checks, failures;
+
+    private PngWriterTest() {
+    }
+
+    private static void check(boolean passed, String what) {
+        checks++;
+        if (!passed) {
+            failures++;
+            System.out.println("FAIL: " + what);
+        }
+    }
+
+    private static BufferedImage image(int width, int height, int type, long seed) {
+        BufferedImage i = new BufferedImage(width, height, type);
+        Random rng = new Random(seed);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Noise, gradients and flat runs exercise every filter type.
+                int rgb = y % 3 == 0 ? rng.nextInt() : y % 3 == 1 ? x * 0x010203 + y : 0x336699;
+                i.setRGB(x, y, rgb & 0xFFFFFF);
+            }
+        }
+        return i;
+    }
+
+    private static void checkPixels(BufferedImage expected, File f, String what) throws IOException {
+        BufferedImage actual = ImageIO.read(f);
+        int w = expected.getWidth(), h = expected.getHeight();
+
+        check(actual != null && actual.getWidth() == w && actual.getHeight() == h, what + ": size");
+        if (actual != null && actual.getWidth() == w && actual.getHeight() == h) {
+            int a[] = expected.getRGB(0, 0, w, h, null, 0, w), b[] = actual.getRGB(0, 0, w, h, null, 0, w);
+            check(Arrays.equals(a, b), what + ": pixels");
+        }
+    }
+
+    private static void checkChunks(File f, int width, int height, String what) throws IOException {
+        ByteArrayOutputStream idat = new ByteArrayOutputStream();
+        byte signature[] = new byte[8];
+        boolean ended = false;
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
+            in.readFully(signature);
+            check(Arrays.equals(signature, new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}),
+                    what + ": signature");
+            while (!ended) {
+                int length = in.readInt();
+                byte type[] = new byte[4], data[] = new byte[length];
+                CRC32 crc = new CRC32();
+
+                in.readFully(type);
+                in.readFully(data);
+                crc.update(type);
+                crc.update(data);
+                check((int) crc.getValue() == in.readInt(), what + ": CRC of " + new String(type, "US-ASCII"));
+                switch (new String(type, "US-ASCII")) {
+                    case "IDAT":
+                        idat.write(data);
+                        break;
+                    case "IEND":
+                        ended = true;
+                        break;
+                }
+            }
+            check(in.read() < 0, what + ": data after IEND");
+        }
+
+        Inflater inf = new Inflater();
+        byte raw[] = new byte[height * (1 + 3 * width) + 1];
+        inf.setInput(idat.toByteArray());
+        try {
+            int n = 0;
+            while (!inf.finished() && !inf.needsInput() && n < raw.length) {
+                n += inf.inflate(raw, n, raw.length - n);
+            }
+            check(inf.finished() && n == raw.length - 1, what + ": inflated length");
+        } catch (DataFormatException ex) {
+            // Also thrown when the Adler-32 does not match.
+            check(false, what + ": " + ex.getMessage());
+        } finally {
+            inf.end();
+        }
+    }
+
+    private static void checkWrite(int width, int height, int type) throws IOException {
+        String what = width + "x" + height + (type == BufferedImage.TYPE_INT_RGB ? "" : " (type " + type + ")");
+        BufferedImage i = image(width, height, type, width * 31L + height);
+        File f = File.createTempFile("PngWriterTest", ".png");
+
+        try {
+            PngWriter.write(i, f);
+            checkPixels(i, f, what);
+            checkChunks(f, width, height, what);
+        } finally {
+            f.delete();
+        }
+    }
+
+    /*
+     * Submits uneven bands last first, as a render that finishes them out of order would.
+     */
+    private static void checkOutOfOrder() throws IOException {
+        int width = 123, height = 301, bands[] = {0, 7, 40, 41, 160, 300, 301};
+        BufferedImage i = image(width, height, BufferedImage.TYPE_INT_RGB, 7);
+        int pixels[] = i.getRGB(0, 0, width, height, null, 0, width);
+        File f = File.createTempFile("PngWriterTest", ".png");
+
+        try {
+            try (PngWriter w = new PngWriter(f, width, height)) {
+                for (int b = bands.length - 2; b >= 0; b--) {
+                    w.submitBand(pixels, bands[b], bands[b + 1] - bands[b]);
+                }
+            }
+            checkPixels(i, f, "bands out of order");
+            checkChunks(f, width, height, "bands out of order");
+        } finally {
+            f.delete();
+        }
+    }
+
+    private static void checkMissingRows() throws IOException {
+        File f = File.createTempFile("PngWriterTest", ".png");
+        boolean thrown = false;
+
+        try {
+            PngWriter w = new PngWriter(f, 10, 20);
+            w.submitBand(new int[200], 0, 10);
+            w.close();
+        } catch (IOException ex) {
+            thrown = true;
+        } finally {
+            f.delete();
+        }
+        check(thrown, "close with rows missing");
+    }
+
+    /**
+     * @param args unused
+     */
+    public static void main(String args[]) throws IOException {
+        checkWrite(1, 1, BufferedImage.TYPE_INT_RGB);
+        checkWrite(17, 3, BufferedImage.TYPE_INT_RGB);
+        checkWrite(640, 480, BufferedImage.TYPE_INT_RGB);
+        checkWrite(333, 1001, BufferedImage.TYPE_INT_RGB);
+        checkWrite(200, 150, BufferedImage.TYPE_3BYTE_BGR);
+        checkOutOfOrder();
+        checkMissingRows();
+        System.out.println(checks + " checks, " + failures + " failed.");
+        System.exit(failures > 0 ? 1 : 0);
+    }
+}
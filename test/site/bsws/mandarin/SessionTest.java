@@ -0,0 +1,157 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  SessionTest.java
+ *
+ *  Checks that a session file reads back as the render that was written.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.EnumSet;
+import java.util.Random;
+
+/**
+ * Writes sessions with and without distance data, at sizes that leave partial tiles on the right
+ * and bottom, and checks that the parameters, statistics and every value read back bit for bit.
+ * Also checks that truncated and foreign files are refused. Runs as a plain program and exits
+ * with status 1 if any check fails.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class SessionTest {
+
+    private static int checks, failures;
+
+    private SessionTest() {
+    }
+
+    private static void check(boolean passed, String what) {
+        checks++;
+        if (!passed) {
+            failures++;
+            System.out.println("FAIL: " + what);
+        }
+    }
+
+    private static float[] values(int length, int maxIters, Random rng) {
+        float data[] = new float[length];
+
+        for (int n = 0; n < length; n++) {
+            data[n] = rng.nextInt(4) == 0 ? maxIters : rng.nextFloat() * maxIters;
+        }
+        return data;
+    }
+
+    private static boolean sameBits(float[] a, float[] b) {
+        for (int n = 0; n < a.length; n++) {
+            if (Float.floatToRawIntBits(a[n]) != Float.floatToRawIntBits(b[n])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void checkRoundTrip(Engine.Parameters p, boolean distances) throws IOException {
+        String what = p.imgWidth + "x" + p.imgHeight + " " + p.kernel.getSpec() + (distances ? " with distances" : "");
+        Random rng = new Random(p.imgWidth * 7919L + p.imgHeight);
+        float iterData[] = values(p.imgWidth * p.imgHeight, p.maxIters, rng),
+                distData[] = distances ? values(iterData.length, 100, rng) : null,
+                readIter[] = new float[iterData.length], readDist[] = new float[iterData.length];
+        Engine.Statistics s = new Engine.Statistics(3, 41.5, p.maxIters, 12345, 678.25);
+        File f = File.createTempFile("SessionTest", ".mnds");
+
+        s.supersampledPoints = 17;
+        s.estimatedPoints = 99;
+        s.kernelName = p.kernel.getName();
+        try {
+            Session.write(f, p, s, iterData, distData);
+            Session r = Session.open(f);
+            Engine.Parameters q = r.getParameters();
+            Engine.Statistics t = r.getStatistics();
+
+            check(q.planeMinX == p.planeMinX && q.planeMaxX == p.planeMaxX && q.planeMinY == p.planeMinY
+                    && q.planeMaxY == p.planeMaxY && q.rotation == p.rotation, what + ": view");
+            check(q.imgWidth == p.imgWidth && q.imgHeight == p.imgHeight && q.maxIters == p.maxIters,
+                    what + ": size and limit");
+            check(q.colMethod == p.colMethod && q.kernel.getSpec().equals(p.kernel.getSpec())
+                    && q.getOptions().equals(p.getOptions()), what + ": colouring, kernel and options");
+            check(t.minIterations == s.minIterations && t.meanIterations == s.meanIterations
+                    && t.maxIterations == s.maxIterations && t.convergentPoints == s.convergentPoints
+                    && t.renderingTime == s.renderingTime && t.supersampledPoints == s.supersampledPoints
+                    && t.estimatedPoints == s.estimatedPoints && s.kernelName.equals(t.kernelName),
+                    what + ": statistics");
+            check(r.hasDistanceData() == distances, what + ": distance channel");
+            for (int n = 0; n < r.getTiles().size(); n++) {
+                r.readTile(n, readIter, readDist);
+            }
+            check(sameBits(iterData, readIter), what + ": iteration data");
+            if (distances) {
+                check(sameBits(distData, readDist), what + ": distance data");
+            }
+        } finally {
+            f.delete();
+        }
+    }
+
+    private static void checkRefused(Engine.Parameters p) throws IOException {
+        File f = File.createTempFile("SessionTest", ".mnds");
+        float iterData[] = new float[p.imgWidth * p.imgHeight];
+        boolean refused;
+
+        try {
+            Session.write(f, p, new Engine.Statistics(1, 1, 1, 0, 0), iterData, null);
+            try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+                raf.setLength(raf.length() / 2);
+            }
+            try {
+                Session.open(f);
+                refused = false;
+            } catch (IOException ex) {
+                refused = true;
+            }
+            check(refused, "truncated file");
+            try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+                raf.writeInt(0x89504E47);
+            }
+            try {
+                Session.open(f);
+                refused = false;
+            } catch (IOException ex) {
+                refused = true;
+            }
+            check(refused, "file of another kind");
+        } finally {
+            f.delete();
+        }
+    }
+
+    /**
+     * @param args unused
+     */
+    public static void main(String args[]) throws IOException {
+        Engine.Parameters.ColouringMethod regular = Engine.Parameters.ColouringMethod.REGULAR;
+
+        checkRoundTrip(new Engine.Parameters(-2, 1, -1.5, 1.5, 1, 1, 50, regular, MandelbrotKernel.INSTANCE,
+                EnumSet.noneOf(Engine.Parameters.Option.class), 0), false);
+        checkRoundTrip(new Engine.Parameters(-2, 1, -1.125, 1.125, 600, 450, 1000, regular,
+                MandelbrotKernel.INSTANCE, EnumSet.of(Engine.Parameters.Option.DISTANCE_ESTIMATION,
+                        Engine.Parameters.Option.AUTOMATIC_ITERATIONS), 0), true);
+        checkRoundTrip(new Engine.Parameters(-1.6, 1.6, -1.2, 1.2, 513, 257, 300,
+                Engine.Parameters.ColouringMethod.BLUE, new JuliaKernel(-0.8, 0.156),
+                EnumSet.of(Engine.Parameters.Option.ANTI_ALIASING), Math.PI / 3), false);
+        checkRoundTrip(new Engine.Parameters(-1.5, 1.5, -1, 1, 300, 200, 200, regular, new MultibrotKernel(4),
+                EnumSet.of(Engine.Parameters.Option.ORBIT_DENSITY, Engine.Parameters.Option.BOUNDED_ORBITS),
+                -Math.PI / 2), false);
+        checkRefused(new Engine.Parameters(-2, 1, -1.5, 1.5, 300, 300, 100, regular, MandelbrotKernel.INSTANCE,
+                EnumSet.noneOf(Engine.Parameters.Option.class), 0));
+        System.out.println(checks + " checks, " + failures + " failed.");
+        System.exit(failures > 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ *!------------------------------------------------------------------------------------------------!
+ *  TileCacheTest.java
+ *
+ *  Checks that the tile cache returns exactly the tiles stored, and only for the same view.
+ *
+ *  Creation date: 19/10/2026
+ *  Author: Arindam Biswas <arindam dot b at eml dot cc>
+ *!------------------------------------------------------------------------------------------------!
+ */
+
+package site.bsws.mandarin;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Stores a frame's tiles and checks that they read back bit for bit, from the same view, from the
+ * view panned by whole tiles and after the cache is reopened, but not for another iteration limit,
+ * kernel or channel count. Also checks that the cache stays near its capacity by dropping its
+ * oldest tiles, and that a tile is still indexed when every slot it could take is in use. Runs as
+ * a plain program and exits with status 1 if any check fails.
+ *
+ * @author Arindam Biswas <arindam dot b at eml dot cc>
+ */
+public class TileCacheTest {
+
+    private static final int SIZE = 64;
+    private static int checks, failures;
+
+    private TileCacheTest() {
+    }
+
+    private static void check(boolean passed, String what) {
+        checks++;
+        if (!passed) {
+            failures++;
+            System.out.println("FAIL: " + what);
+        }
+    }
+
+    private static Engine.Parameters view(double minX, int width, int height, int maxIters, Kernel k) {
+        double unit = 3.0 / 960;
+
+        return new Engine.Parameters(minX, minX + width * unit, -1.125, -1.125 + height * unit, width, height,
+                maxIters, Engine.Parameters.ColouringMethod.REGULAR, k,
+                EnumSet.noneOf(Engine.Parameters.Option.class), 0);
+    }
+
+    private static List<Rectangle> tiles(Engine.Parameters p) {
+        List<Rectangle> tiles = new ArrayList<>();
+
+        for (int y = 0; y < p.imgHeight; y += SIZE) {
+            for (int x = 0; x < p.imgWidth; x += SIZE) {
+                tiles.add(new Rectangle(x, y, Math.min(SIZE, p.imgWidth - x), Math.min(SIZE, p.imgHeight - y)));
+            }
+        }
+        return tiles;
+    }
+
+    private static float[] values(int length, long seed) {
+        Random rng = new Random(seed);
+        float data[] = new float[length];
+
+        for (int n = 0; n < length; n++) {
+            data[n] = rng.nextFloat() * 1000;
+        }
+        return data;
+    }
+
+    /*
+     * Tells whether tile of p, shifted by (dx, dy) pixels, is cached with the values it has in the
+     * frame q at its unshifted place.
+     */
+    private static boolean holds(TileCache c, Engine.Parameters p, Kernel k, Rectangle tile, int dx, int dy,
+            Engine.Parameters q, float[] iterData, float[] distData) throws IOException {
+        Rectangle at = new Rectangle(tile.x + dx, tile.y + dy, tile.width, tile.height);
+        float readIter[] = new float[p.imgWidth * p.imgHeight],
+                readDist[] = distData == null ? null : new float[readIter.length];
+
+        if (!c.read(p, k, at, readIter, readDist)) {
+            return false;
+        }
+        for (int j = 0; j < tile.height; j++) {
+            for (int i = 0; i < tile.width; i++) {
+                int src = (tile.y + j) * q.imgWidth + tile.x + i, dst = (at.y + j) * p.imgWidth + at.x + i;
+                if (Float.floatToRawIntBits(readIter[dst]) != Float.floatToRawIntBits(iterData[src])
+                        || distData != null
+                        && Float.floatToRawIntBits(readDist[dst]) != Float.floatToRawIntBits(distData[src])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void checkRoundTrip(File dir) throws IOException {
+        Kernel k = MandelbrotKernel.INSTANCE;
+        Engine.Parameters p = view(-2, 500, 300, 1000, k), panned = view(-2 + 2 * SIZE * 3.0 / 960, 500, 300, 1000, k);
+        float iterData[] = values(p.imgWidth * p.imgHeight, 1), distData[] = values(iterData.length, 2);
+        List<Rectangle> tiles = tiles(p);
+        boolean all = true, panHits = true, limitMiss = true, kernelMiss = true, channelMiss = true;
+
+        TileCache c = TileCache.open(dir, 64L << 20);
+        try {
+            for (Rectangle t : tiles) {
+                c.write(p, k, t, iterData, distData);
+            }
+            for (Rectangle t : tiles) {
+                all &= holds(c, p, k, t, 0, 0, p, iterData, distData);
+                if (t.x >= 2 * SIZE) {
+                    panHits &= holds(c, panned, k, t, -2 * SIZE, 0, p, iterData, distData);
+                }
+                limitMiss &= !holds(c, view(-2, 500, 300, 999, k), k, t, 0, 0, p, iterData, distData);
+                kernelMiss &= !holds(c, p, BurningShipKernel.INSTANCE, t, 0, 0, p, iterData, distData);
+                channelMiss &= !holds(c, p, k, t, 0, 0, p, iterData, null);
+            }
+            check(all, "tiles read back");
+            check(panHits, "tiles read back in a view panned by two tiles");
+            check(limitMiss, "no hits for another iteration limit");
+            check(kernelMiss, "no hits for another kernel");
+            check(channelMiss, "no hits without distances for tiles stored with them");
+        } finally {
+            c.close();
+        }
+
+        c = TileCache.open(dir, 64L << 20);
+        try {
+            all = true;
+            for (Rectangle t : tiles) {
+                all &= holds(c, p, k, t, 0, 0, p, iterData, distData);
+            }
+            check(all, "tiles read back after reopening");
+        } finally {
+            c.close();
+        }
+    }
+
+    /*
+     * Random values hardly compress, so each tile takes about 16 KB, and a 2 MB cache holds the last
+     * hundred or so of the 300 written.
+     */
+    private static void checkEviction(File dir) throws IOException {
+        Kernel k = MandelbrotKernel.INSTANCE;
+        long capacity = 2 << 20, used = 0;
+        TileCache c = TileCache.open(dir, capacity);
+        Rectangle t = new Rectangle(0, 0, SIZE, SIZE);
+        float iterData[] = values(SIZE * SIZE, 3);
+
+        try {
+            for (int n = 0; n < 300; n++) {
+                c.write(view(-2 + n * 4 * SIZE * 3.0 / 960, SIZE, SIZE, 500, k), k, t, iterData, null);
+            }
+            check(!holds(c, view(-2, SIZE, SIZE, 500, k), k, t, 0, 0, view(-2, SIZE, SIZE, 500, k), iterData,
+                    null), "the first tile is dropped");
+            Engine.Parameters last = view(-2 + 299 * 4 * SIZE * 3.0 / 960, SIZE, SIZE, 500, k);
+            check(holds(c, last, k, t, 0, 0, last, iterData, null), "the last tile is kept");
+        } finally {
+            c.close();
+        }
+        for (File f : dir.listFiles()) {
+            if (f.getName().startsWith("segment-")) {
+                used += f.length();
+            }
+        }
+        check(used <= capacity + (1 << 20), "segments total " + used + " bytes");
+    }
+
+    /*
+     * Marks every slot of the index as holding a live record, so that a new tile finds no free slot
+     * within its probes.
+     */
+    private static void checkFullIndex(File dir) throws IOException, ReflectiveOperationException {
+        Kernel k = MandelbrotKernel.INSTANCE;
+        Engine.Parameters p = view(-2, SIZE, SIZE, 500, k);
+        float iterData[] = values(SIZE * SIZE, 4);
+        TileCache c = TileCache.open(dir, 64L << 20);
+
+        try {
+            Field f = TileCache.class.getDeclaredField("index");
+            f.setAccessible(true);
+            MappedByteBuffer index = (MappedByteBuffer) f.get(c);
+            int header = constant("HEADER_SIZE"), slotSize = constant("SLOT_SIZE"), slots = constant("SLOT_COUNT");
+
+            for (int s = 0; s < slots; s++) {
+                index.putLong(header + s * slotSize, 0x5EED0000L + s);
+                index.putInt(header + s * slotSize + 8, 0);
+            }
+            c.write(p, k, new Rectangle(0, 0, SIZE, SIZE), iterData, null);
+            check(holds(c, p, k, new Rectangle(0, 0, SIZE, SIZE), 0, 0, p, iterData, null),
+                    "a tile is indexed when its probe window is full");
+        } finally {
+            c.close();
+        }
+    }
+
+    private static int constant(String name) throws ReflectiveOperationException {
+        Field f = TileCache.class.getDeclaredField(name);
+
+        f.setAccessible(true);
+        return f.getInt(null);
+    }
+
+    private static void delete(File dir) {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * @param args unused
+     */
+    public static void main(String args[]) throws IOException, ReflectiveOperationException {
+        File dirs[] = new File[3];
+
+        try {
+            for (int n = 0; n < dirs.length; n++) {
+                dirs[n] = Files.createTempDirectory("TileCacheTest").toFile();
+            }
+            checkRoundTrip(dirs[0]);
+            checkEviction(dirs[1]);
+            checkFullIndex(dirs[2]);
+        } finally {
+            for (File d : dirs) {
+                if (d != null) {
+                    delete(d);
+                }
+            }
+        }
+        System.out.println(checks + " checks, " + failures + " failed.");
+        System.exit(failures > 0 ? 1 : 0);
+    }
+}